@@ -1,14 +1,25 @@
 package org.example;
 
+import org.example.controller.BatchRunner;
 import org.example.controller.DatasetProcessor;
 import org.example.util.Printer;
 import org.json.JSONException;
 
 import java.io.IOException;
+import java.util.List;
 
 public class Main {
     public static void main(String[] args) {
 
+        //projects from the command line or from batch.projects: batch run, otherwise the single project.name
+        List<String> batch = args.length > 0 ? List.of(args) : BatchRunner.configuredProjects();
+        if (!batch.isEmpty()) {
+            if (!new BatchRunner(batch).run()) {
+                System.exit(1);
+            }
+            return;
+        }
+
         try {
             DatasetProcessor datasetProcessor = new DatasetProcessor();
             datasetProcessor.extractData();
@@ -16,4 +27,4 @@ public class Main {
             Printer.errorPrint("Cannot extract release data.");
         }
     }
-}
\ No newline at end of file
+}
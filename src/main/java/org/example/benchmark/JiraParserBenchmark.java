@@ -0,0 +1,194 @@
+package org.example.benchmark;
+
+import org.example.controller.JiraResponseParser;
+import org.example.entity.JiraTicket;
+import org.example.entity.Release;
+import org.example.entity.ReleaseTimeline;
+import org.example.util.Printer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class JiraParserBenchmark {
+
+    /** Compares the streaming JiraResponseParser with the old readAll + JSONObject path on recorded responses.
+     *  usage: JiraParserBenchmark <project response .json> <search page .json>... [-Diterations=20]
+     *  For every path it prints the average parse time, the bytes allocated and the peak heap usage of one pass.
+     */
+
+    private static final DateTimeFormatter JIRA_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+
+    private JiraParserBenchmark() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            Printer.errorPrint("usage: JiraParserBenchmark <project response> <search page>...");
+            return;
+        }
+        int iterations = Integer.getInteger("iterations", 20);
+        File versionsFile = new File(args[0]);
+        List<File> pages = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) pages.add(new File(args[i]));
+
+        //warm up both paths, and check that they agree before measuring anything
+        List<JiraTicket> legacy = runLegacy(versionsFile, pages);
+        List<JiraTicket> streaming = runStreaming(versionsFile, pages);
+        Printer.println("Tickets: legacy=" + legacy.size() + " streaming=" + streaming.size()
+                + " identical=" + sameTickets(legacy, streaming));
+
+        measure("readAll + JSONObject", iterations, () -> runLegacy(versionsFile, pages));
+        measure("streaming parser", iterations, () -> runStreaming(versionsFile, pages));
+    }
+
+    private static void measure(String label, int iterations, Pass pass) throws IOException {
+
+        //peak heap and allocation of a single pass, then the average time over all iterations
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        long baseline = heapPools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long allocatedBefore = allocatedBytes();
+
+        pass.run();
+
+        long allocated = allocatedBytes() - allocatedBefore;
+        long peak = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum() - baseline;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) pass.run();
+        double avgMillis = (System.nanoTime() - start) / 1_000_000.0 / iterations;
+
+        Printer.println(String.format("%-22s avg %8.2f ms   allocated %8.2f MB   peak heap +%8.2f MB",
+                label, avgMillis, allocated / 1048576.0, Math.max(0, peak) / 1048576.0));
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadBean) {
+            return threadBean.getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    private static List<JiraTicket> runStreaming(File versionsFile, List<File> pages) throws IOException {
+        List<Release> releases = new ArrayList<>();
+        try (Reader reader = open(versionsFile)) {
+            JiraResponseParser.parseVersions(reader, releases::add);
+        }
+        JiraResponseParser parser = new JiraResponseParser(ReleaseTimeline.of(releases));
+        List<JiraTicket> tickets = new ArrayList<>();
+        for (File page : pages) {
+            try (Reader reader = open(page)) {
+                JiraResponseParser.parseSearchPage(reader, issue -> tickets.add(parser.toTicket(issue)));
+            }
+        }
+        return tickets;
+    }
+
+    private static List<JiraTicket> runLegacy(File versionsFile, List<File> pages) throws IOException {
+
+        //same steps the controllers used to take: whole document in a String, then a JSONObject tree
+        List<Release> releases = new ArrayList<>();
+        JSONArray versions = new JSONObject(readAll(open(versionsFile))).getJSONArray("versions");
+        for (int i = 0; i < versions.length(); i++) {
+            JSONObject version = versions.getJSONObject(i);
+            if (version.has("releaseDate")) {
+                String name = version.has("name") ? version.get("name").toString() : "";
+                String id = version.has("id") ? version.get("id").toString() : "";
+                Instant date = LocalDate.parse(version.get("releaseDate").toString()).atStartOfDay().toInstant(ZoneOffset.UTC);
+                releases.add(new Release(id, name, date));
+            }
+        }
+
+        ReleaseTimeline timeline = ReleaseTimeline.of(releases);
+        List<JiraTicket> tickets = new ArrayList<>();
+        for (File page : pages) {
+            JSONArray issues = new JSONObject(readAll(open(page))).getJSONArray("issues");
+            for (int i = 0; i < issues.length(); i++) {
+                JSONObject issue = issues.getJSONObject(i);
+                JSONObject fields = issue.getJSONObject("fields");
+                if (!issue.has("key")) continue;
+
+                List<Release> affected = legacyReleases(fields.optJSONArray("versions"), releases);
+                List<Release> fixed = legacyReleases(fields.optJSONArray("fixVersions"), releases);
+                Instant created = Instant.from(JIRA_DATE_FORMATTER.parse(fields.getString("created")));
+                String comment = "";
+                if (fields.has("comment") && fields.getJSONObject("comment").has("comments")) {
+                    JSONArray comments = fields.getJSONObject("comment").getJSONArray("comments");
+                    if (!comments.isEmpty()) comment = comments.getJSONObject(0).optString("body", "");
+                }
+                tickets.add(new JiraTicket(issue.getString("id"), issue.getString("key"), fields.optString("resolution.name", ""),
+                        comment, timeline, legacyReleaseByDate(created, releases),
+                        affected.isEmpty() ? null : affected.getFirst(), fixed, affected));
+            }
+        }
+        return tickets;
+    }
+
+    private static List<Release> legacyReleases(JSONArray versionsArray, List<Release> allReleases) {
+        List<Release> found = new ArrayList<>();
+        if (versionsArray == null) return found;
+        for (int i = 0; i < versionsArray.length(); i++) {
+            String versionName = versionsArray.getJSONObject(i).optString("name");
+            allReleases.stream().filter(r -> r.getName().equals(versionName)).findFirst().ifPresent(found::add);
+        }
+        found.sort(Comparator.comparing(Release::getDate));
+        return found;
+    }
+
+    private static Release legacyReleaseByDate(Instant date, List<Release> allReleases) {
+        Release foundRelease = null;
+        for (Release release : allReleases) {
+            if (release.getDate().isAfter(date)) break;
+            foundRelease = release;
+        }
+        return foundRelease;
+    }
+
+    private static String readAll(Reader rd) throws IOException {
+        try (rd) {
+            StringBuilder sb = new StringBuilder();
+            int cp;
+            while ((cp = rd.read()) != -1) sb.append((char) cp);
+            return sb.toString();
+        }
+    }
+
+    private static boolean sameTickets(List<JiraTicket> a, List<JiraTicket> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (!describe(a.get(i)).equals(describe(b.get(i)))) return false;
+        }
+        return true;
+    }
+
+    private static String describe(JiraTicket t) {
+        return String.join("|", t.getIssueId(), t.getName(), t.getDescription(),
+                t.getOpeningVersion() == null ? "" : t.getOpeningVersion().getName(),
+                t.getInjectVersion() == null ? "" : t.getInjectVersion().getName(),
+                t.getAffectedVersions().stream().map(Release::getName).toList().toString(),
+                t.getFixVersions().stream().map(Release::getName).toList().toString());
+    }
+
+    private static Reader open(File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+    }
+
+    @FunctionalInterface
+    private interface Pass {
+        List<JiraTicket> run() throws IOException;
+    }
+}
@@ -0,0 +1,177 @@
+package org.example.benchmark;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.util.RawParseUtils;
+import org.example.util.Printer;
+import org.example.util.TicketKeyMatcher;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class TicketKeyScanBenchmark {
+
+    /** Compares the old regex + HashSet linking with TicketKeyMatcher, on decoded messages and on raw commit bytes.
+     *  usage: TicketKeyScanBenchmark <tickets .csv> [git dir] [-Dcommits=1000000] [-Diterations=5]
+     *  The keys are the Name column of a Tickets csv written by JiraController.
+     *  With a git dir the commit messages of the repository are used (repeated up to -Dcommits),
+     *  without it the messages are generated, mixing keys of the project, keys of other projects and plain text.
+     *  Every path must find the same links, the checksum of the (commit, key) sequence is printed next to the timings.
+     */
+
+    private static final Pattern JIRA_ID_PATTERN = Pattern.compile("([A-Z]+-\\d+)");
+
+    private TicketKeyScanBenchmark() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            Printer.errorPrint("usage: TicketKeyScanBenchmark <tickets csv> [git dir]");
+            return;
+        }
+        int commits = Integer.getInteger("commits", 1_000_000);
+        int iterations = Integer.getInteger("iterations", 5);
+
+        List<String> keys = readKeys(new File(args[0]));
+        List<byte[]> messages = args.length > 1 ? readMessages(new File(args[1])) : generateMessages(keys, commits);
+        if (messages.isEmpty()) {
+            Printer.errorPrint("No commit messages to scan.");
+            return;
+        }
+
+        //both representations are built up front, only the scan is measured
+        byte[][] raw = new byte[commits][];
+        String[] decoded = new String[commits];
+        for (int i = 0; i < commits; i++) {
+            raw[i] = messages.get(i % messages.size());
+            decoded[i] = i < messages.size() ? new String(raw[i], StandardCharsets.UTF_8) : decoded[i % messages.size()];
+        }
+        Printer.println(String.format("%d ticket keys, %d commits (%d distinct messages)", keys.size(), commits, messages.size()));
+
+        Set<String> keySet = new HashSet<>(keys);
+        TicketKeyMatcher matcher = new TicketKeyMatcher(keySet);
+
+        measure("regex + HashSet", iterations, () -> scanRegex(decoded, keySet));
+        measure("automaton on String", iterations, () -> scanDecoded(decoded, matcher));
+        measure("automaton on bytes", iterations, () -> scanRaw(raw, matcher));
+    }
+
+    private static void measure(String label, int iterations, Pass pass) {
+        long checksum = pass.run(); //warm up
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) pass.run();
+        double avgMillis = (System.nanoTime() - start) / 1_000_000.0 / iterations;
+        double allocated = (allocatedBytes() - allocatedBefore) / 1048576.0 / iterations;
+
+        Printer.println(String.format("%-20s avg %9.2f ms   allocated %9.2f MB   links checksum %016x",
+                label, avgMillis, allocated, checksum));
+    }
+
+
+    private static long scanRegex(String[] messages, Set<String> keys) {
+        long checksum = 0;
+        for (int i = 0; i < messages.length; i++) {
+            Matcher m = JIRA_ID_PATTERN.matcher(messages[i]);
+            while (m.find()) {
+                String key = m.group(1);
+                if (keys.contains(key)) checksum = checksum * 31 + i * 17L + key.hashCode();
+            }
+        }
+        return checksum;
+    }
+
+    private static long scanDecoded(String[] messages, TicketKeyMatcher matcher) {
+        long[] checksum = new long[1];
+        int[] commit = new int[1];
+        TicketKeyMatcher.MatchHandler handler = k -> checksum[0] = checksum[0] * 31 + commit[0] * 17L + matcher.key(k).hashCode();
+        for (int i = 0; i < messages.length; i++) {
+            commit[0] = i;
+            matcher.scan(messages[i], handler);
+        }
+        return checksum[0];
+    }
+
+    private static long scanRaw(byte[][] messages, TicketKeyMatcher matcher) {
+        long[] checksum = new long[1];
+        int[] commit = new int[1];
+        TicketKeyMatcher.MatchHandler handler = k -> checksum[0] = checksum[0] * 31 + commit[0] * 17L + matcher.key(k).hashCode();
+        for (int i = 0; i < messages.length; i++) {
+            commit[0] = i;
+            matcher.scan(messages[i], 0, messages[i].length, handler);
+        }
+        return checksum[0];
+    }
+
+
+    private static List<String> readKeys(File ticketsCsv) throws IOException {
+        //Index,IssueID,Name,... : the key is the third column
+        List<String> keys = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(ticketsCsv), StandardCharsets.UTF_8))) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.split(",", 4);
+                if (columns.length > 2) keys.add(columns[2]);
+            }
+        }
+        return keys;
+    }
+
+    private static List<byte[]> readMessages(File gitDir) throws IOException {
+        //message part of the raw commit buffer, exactly what the automaton would read from a RevCommit
+        List<byte[]> messages = new ArrayList<>();
+        try (Repository repository = new FileRepositoryBuilder().setGitDir(gitDir).build();
+             RevWalk walk = new RevWalk(repository)) {
+            walk.markStart(walk.parseCommit(repository.resolve("HEAD")));
+            for (RevCommit commit : walk) {
+                byte[] buffer = commit.getRawBuffer();
+                int start = RawParseUtils.commitMessage(buffer, 0);
+                messages.add(Arrays.copyOfRange(buffer, Math.max(start, 0), buffer.length));
+            }
+        }
+        return messages;
+    }
+
+    private static List<byte[]> generateMessages(List<String> keys, int count) {
+        String[] otherProjects = {"HADOOP", "DERBY", "OPENJPAX", "JPA", "HBASE"};
+        String[] words = {"fix", "refactor", "merge", "update", "tests", "for", "the", "query", "cache", "NPE", "in", "é", "build"};
+        Random random = new Random(42);
+        List<byte[]> messages = new ArrayList<>(count);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.setLength(0);
+            int length = 6 + random.nextInt(30);
+            for (int w = 0; w < length; w++) {
+                int kind = random.nextInt(20);
+                if (kind == 0 && !keys.isEmpty()) {
+                    sb.append(keys.get(random.nextInt(keys.size())));
+                } else if (kind == 1) {
+                    sb.append(otherProjects[random.nextInt(otherProjects.length)]).append('-').append(random.nextInt(5000));
+                } else {
+                    sb.append(words[random.nextInt(words.length)]);
+                }
+                sb.append(random.nextInt(8) == 0 ? ": " : " ");
+            }
+            messages.add(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return messages;
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadBean) {
+            return threadBean.getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    @FunctionalInterface
+    private interface Pass {
+        long run();
+    }
+}
@@ -0,0 +1,141 @@
+package org.example.controller;
+
+import org.example.util.ConfigurationManager;
+import org.example.util.Printer;
+import org.example.util.RunContext;
+import org.example.util.RunMetrics;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class BatchRunner {
+
+    /** Class responsibility: run the whole pipeline for several projects in one JVM.
+     *  Every project gets its own RunContext (configuration from ConfigurationManager.forProject), projects run
+     *  batch.parallel.projects at a time and their CPU bound stages share one pool of batch.workers threads,
+     *  so the machine is kept busy without oversubscribing it however many projects are in the batch.
+     *  Before that, a proportion value is computed for every project from its own tickets: a project with fewer
+     *  than proportion.coldstart.min tickets with a known IV borrows the median p of the projects that have enough.
+     *  A failed project is reported in the summary and does not stop the others.
+     */
+
+    private static final Logger LOGGER = Logger.getLogger(BatchRunner.class.getName());
+
+    private final List<String> projects;
+    private final ConfigurationManager config;
+
+    public BatchRunner(List<String> projects) {
+        this.projects = List.copyOf(projects);
+        this.config = ConfigurationManager.getInstance();
+    }
+
+    // batch.projects=OPENJPA,BOOKKEEPER,...
+    public static List<String> configuredProjects() {
+        String value = ConfigurationManager.getInstance().getProperty("batch.projects", "");
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .toList();
+    }
+
+    // true when every project completed
+    public boolean run() {
+        int parallelProjects = Math.max(1, Math.min(projects.size(), config.getIntProperty("batch.parallel.projects", 2)));
+        ForkJoinPool workers = new ForkJoinPool(Math.max(1, config.getIntProperty("batch.workers", Runtime.getRuntime().availableProcessors())));
+        ExecutorService projectPool = Executors.newFixedThreadPool(parallelProjects);
+
+        Map<String, String> outcomes = new LinkedHashMap<>();
+        try {
+            List<RunContext> contexts = projects.stream()
+                    .map(name -> new RunContext(config.forProject(name), workers, OptionalDouble.empty(), new RunMetrics()))
+                    .toList();
+            Map<String, DatasetProcessor.ProportionSample> samples = sampleProportions(contexts, projectPool);
+            contexts = withColdStartP(contexts, samples);
+
+            Map<String, Future<Long>> runs = new LinkedHashMap<>();
+            for (RunContext context : contexts) {
+                //the releases and tickets read for the sample are the ones of the run
+                DatasetProcessor.ProportionSample sample = samples.get(context.projectName());
+                runs.put(context.projectName(), projectPool.submit(() -> {
+                    long start = System.nanoTime();
+                    new DatasetProcessor(context, sample != null ? sample.jira() : null).extractData();
+                    return System.nanoTime() - start;
+                }));
+            }
+            for (Map.Entry<String, Future<Long>> run : runs.entrySet()) {
+                outcomes.put(run.getKey(), outcome(run.getValue()));
+            }
+        } finally {
+            projectPool.shutdownNow();
+            workers.shutdownNow();
+        }
+
+        Printer.println("Batch summary:");
+        outcomes.forEach((project, outcome) -> Printer.println(String.format("  %-12s %s", project, outcome)));
+        return outcomes.values().stream().allMatch(outcome -> outcome.startsWith("done"));
+    }
+
+    // p of every project from its own tickets, by project; a project whose sample failed is missing
+    private Map<String, DatasetProcessor.ProportionSample> sampleProportions(List<RunContext> contexts, ExecutorService projectPool) {
+        Map<String, Future<DatasetProcessor.ProportionSample>> pending = new LinkedHashMap<>();
+        for (RunContext context : contexts) {
+            pending.put(context.projectName(), projectPool.submit(() -> new DatasetProcessor(context).sampleProportion()));
+        }
+        Map<String, DatasetProcessor.ProportionSample> samples = new HashMap<>();
+        for (Map.Entry<String, Future<DatasetProcessor.ProportionSample>> entry : pending.entrySet()) {
+            try {
+                samples.put(entry.getKey(), entry.getValue().get());
+            } catch (ExecutionException e) {
+                //the full run of the project fails again and is reported there
+                LOGGER.log(Level.WARNING, "No proportion sample for " + entry.getKey(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return samples;
+            }
+        }
+        return samples;
+    }
+
+    // contexts of the projects without enough tickets of their own get the cold start p of the others
+    private List<RunContext> withColdStartP(List<RunContext> contexts, Map<String, DatasetProcessor.ProportionSample> samples) {
+        int minTickets = Math.max(1, config.getIntProperty("proportion.coldstart.min", 1));
+
+        List<RunContext> result = new ArrayList<>();
+        for (RunContext context : contexts) {
+            //median of the other projects only: a project never borrows its own p
+            double[] donors = samples.values().stream()
+                    .filter(sample -> !sample.project().equals(context.projectName()) && sample.knownTickets() >= minTickets)
+                    .mapToDouble(DatasetProcessor.ProportionSample::p)
+                    .sorted()
+                    .toArray();
+            OptionalDouble coldStartP = donors.length == 0 ? OptionalDouble.empty() : OptionalDouble.of(median(donors));
+            DatasetProcessor.ProportionSample own = samples.get(context.projectName());
+            if (own != null && coldStartP.isPresent()) {
+                Printer.println(String.format("%s: p = %.4f from %d tickets, cold start p = %.4f from %d other projects",
+                        own.project(), own.p(), own.knownTickets(), coldStartP.getAsDouble(), donors.length));
+            }
+            result.add(context.withColdStartP(coldStartP));
+        }
+        return result;
+    }
+
+    private static double median(double[] sorted) {
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2.0;
+    }
+
+    private static String outcome(Future<Long> run) {
+        try {
+            return String.format("done in %.1f s", run.get() / 1e9);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            LOGGER.log(Level.SEVERE, "Project failed", cause);
+            return "FAILED: " + cause;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        }
+    }
+}
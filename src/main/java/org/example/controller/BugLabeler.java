@@ -0,0 +1,164 @@
+package org.example.controller;
+
+import com.github.javaparser.JavaParser;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.patch.FileHeader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.example.entity.CommitTable;
+import org.example.entity.JiraTicket;
+import org.example.entity.MethodMetrics;
+import org.example.entity.Release;
+import org.example.util.IntervalTree;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class BugLabeler {
+
+    /** Class responsibility: find the methods touched by the fix commits of every bug ticket,
+     *  and mark them buggy in every release the ticket affects ([IV, FV) after proportion).
+     *  The methods touched by every ticket are kept apart from the labels, so that other proportion estimates
+     *  (e.g. the walk-forward datasets) can label the same fixes again without any diff.
+     *  - every fix commit is diffed against its first parent: the hunks are located in the pre-fix file
+     *  - the methods of a pre-fix file are put in an IntervalTree of line ranges, a hunk is one O(log n) query
+     *  - a commit linked to several tickets, and a file touched by several commits, are analyzed once
+     *  Methods are identified by path and type-qualified signature (see methodKey), like the rows of MethodExtractor.
+     */
+
+    private static final Logger LOGGER = Logger.getLogger(BugLabeler.class.getName());
+
+    private final Repository repository;
+
+    public BugLabeler(Repository repository) {
+        this.repository = repository;
+    }
+
+    public static String methodKey(String path, String method) {
+        return path + "#" + method;
+    }
+
+
+    // buggy method keys of every release: the methods touched by a ticket are buggy in its affected versions
+    public static Map<Release, Set<String>> label(Map<String, Set<String>> touchedByTicket, List<JiraTicket> tickets) {
+        Map<Release, Set<String>> buggyMethods = new HashMap<>();
+        for (JiraTicket ticket : tickets) {
+            Set<String> touched = touchedByTicket.get(ticket.getName());
+            if (touched == null || !ticket.hasAffectedVersions()) continue;
+            for (Release release : ticket.getAffectedVersions()) {
+                buggyMethods.computeIfAbsent(release, r -> new HashSet<>()).addAll(touched);
+            }
+        }
+        return buggyMethods;
+    }
+
+    // method keys touched by the fix commits of every ticket with a fix version, by ticket key
+    // ticketCommits: ordinals in commits of the fix commits of every ticket
+    public Map<String, Set<String>> touchedMethods(Map<String, int[]> ticketCommits, CommitTable commits, List<JiraTicket> tickets) throws IOException {
+
+        Map<String, JiraTicket> ticketsByKey = new HashMap<>();
+        for (JiraTicket ticket : tickets) ticketsByKey.put(ticket.getName(), ticket);
+
+        Map<String, Set<String>> touchedByTicket = new HashMap<>();
+        Map<Integer, Set<String>> touchedByCommit = new HashMap<>();
+        Map<ObjectId, IntervalTree<MethodMetrics>> methodsByBlob = new HashMap<>();
+
+        try (ObjectReader reader = repository.newObjectReader();
+             RevWalk walk = new RevWalk(reader);
+             DiffFormatter formatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+
+            formatter.setReader(reader, repository.getConfig());
+            formatter.setDiffComparator(RawTextComparator.DEFAULT);
+            formatter.setPathFilter(PathSuffixFilter.create(".java"));
+            formatter.setDetectRenames(true); //a renamed and fixed file keeps its pre-fix path
+            FixAnalyzer analyzer = new FixAnalyzer(reader, walk, formatter, methodsByBlob);
+
+            for (Map.Entry<String, int[]> entry : ticketCommits.entrySet()) {
+                JiraTicket ticket = ticketsByKey.get(entry.getKey());
+                if (ticket == null || !ticket.hasFixVersion()) continue; //no [IV, FV) range, whatever the IV
+
+                Set<String> touched = new HashSet<>();
+                for (int commit : entry.getValue()) {
+                    Set<String> methods = touchedByCommit.get(commit);
+                    if (methods == null) {
+                        methods = analyzer.touchedMethods(commits.id(commit));
+                        touchedByCommit.put(commit, methods);
+                    }
+                    touched.addAll(methods);
+                }
+                touchedByTicket.put(entry.getKey(), touched);
+            }
+        }
+
+        LOGGER.log(Level.INFO, "{0} fix commits analyzed, {1} pre-fix files parsed",
+                new Object[]{touchedByCommit.size(), methodsByBlob.size()});
+        return touchedByTicket;
+    }
+
+
+    private static final class FixAnalyzer {
+        private final ObjectReader reader;
+        private final RevWalk walk;
+        private final DiffFormatter formatter;
+        private final Map<ObjectId, IntervalTree<MethodMetrics>> methodsByBlob;
+        private final JavaParser parser = MethodExtractor.newParser();
+
+        FixAnalyzer(ObjectReader reader, RevWalk walk, DiffFormatter formatter, Map<ObjectId, IntervalTree<MethodMetrics>> methodsByBlob) {
+            this.reader = reader;
+            this.walk = walk;
+            this.formatter = formatter;
+            this.methodsByBlob = methodsByBlob;
+        }
+
+        Set<String> touchedMethods(ObjectId commitId) throws IOException {
+            Set<String> touched = new HashSet<>();
+            RevCommit commit = walk.parseCommit(commitId);
+            if (commit.getParentCount() == 0) return touched; //no pre-fix version
+
+            RevCommit parent = walk.parseCommit(commit.getParent(0));
+            for (DiffEntry entry : formatter.scan(parent.getTree(), commit.getTree())) {
+                if (entry.getChangeType() == DiffEntry.ChangeType.ADD || entry.getChangeType() == DiffEntry.ChangeType.COPY) {
+                    continue; //the file did not exist before the fix
+                }
+                FileHeader header = formatter.toFileHeader(entry);
+                if (header.getPatchType() != FileHeader.PatchType.UNIFIED || header.toEditList().isEmpty()) continue;
+
+                IntervalTree<MethodMetrics> methods = methodsOf(entry.getOldId().toObjectId());
+                String path = entry.getOldPath();
+                for (Edit edit : header.toEditList()) {
+                    if (edit.getLengthA() > 0) {
+                        //lines beginA+1 .. endA (1-based) of the pre-fix file were changed or removed
+                        methods.overlapping(edit.getBeginA() + 1, edit.getEndA(), m -> touched.add(methodKey(path, m.name())));
+                    } else {
+                        //pure insertion after line beginA: the method must contain both neighbouring lines
+                        int before = edit.getBeginA();
+                        methods.overlapping(before, before + 1, m -> {
+                            if (m.startLine() <= before && m.endLine() >= before + 1) touched.add(methodKey(path, m.name()));
+                        });
+                    }
+                }
+            }
+            return touched;
+        }
+
+        private IntervalTree<MethodMetrics> methodsOf(ObjectId blobId) throws IOException {
+            IntervalTree<MethodMetrics> tree = methodsByBlob.get(blobId);
+            if (tree == null) {
+                List<MethodMetrics> methods = MethodExtractor.parseMethods(parser, reader, blobId);
+                tree = new IntervalTree<>(methods != null ? methods : List.of(), MethodMetrics::startLine, MethodMetrics::endLine);
+                methodsByBlob.put(blobId, tree);
+            }
+            return tree;
+        }
+    }
+}
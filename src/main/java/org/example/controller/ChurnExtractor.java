@@ -0,0 +1,147 @@
+package org.example.controller;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.patch.FileHeader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.example.entity.CommitTable;
+import org.example.entity.FileChange;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+public class ChurnExtractor {
+
+    /** Class responsibility: compute the lines added and deleted in every .java file touched by a commit.
+     *  - the commits are diffed by a fixed set of workers, each with its own ObjectReader and DiffFormatter
+     *    (neither is thread safe, and creating them per commit is what made the naive loop slow)
+     *  - the path filter drops non-Java files while the trees are compared, before any blob is read;
+     *    binary and oversized files come out of the formatter as non-unified patches and are skipped
+     *  - commits go through in batches and every batch is handed to the consumer in commit order,
+     *    so memory is bounded by the batch size and not by the length of the history
+     */
+
+    private static final int COMMITS_PER_WORKER = 64;
+
+    private final Repository repository;
+    private final int workers;
+    private final boolean detectRenames;
+    private final ExecutorService sharedExecutor;
+
+    public ChurnExtractor(Repository repository, int workers, boolean detectRenames) {
+        this(repository, workers, detectRenames, null);
+    }
+
+    // sharedExecutor: pool owned by the caller (batch runs), null to use a pool of 'workers' threads of our own
+    public ChurnExtractor(Repository repository, int workers, boolean detectRenames, ExecutorService sharedExecutor) {
+        this.repository = repository;
+        this.workers = Math.max(1, workers);
+        this.detectRenames = detectRenames;
+        this.sharedExecutor = sharedExecutor;
+    }
+
+
+    public long extract(CommitTable commits, Consumer<FileChange> consumer) throws IOException {
+
+        List<DiffWorker> diffWorkers = new ArrayList<>();
+        ExecutorService executor = sharedExecutor != null ? sharedExecutor : Executors.newFixedThreadPool(workers);
+        long records = 0;
+        try {
+            for (int i = 0; i < workers; i++) diffWorkers.add(new DiffWorker());
+
+            int batchSize = workers * COMMITS_PER_WORKER;
+            for (int from = 0; from < commits.size(); from += batchSize) {
+                int batchEnd = Math.min(commits.size(), from + batchSize);
+
+                //contiguous slice of the batch for every worker, results collected back in the same order
+                int sliceSize = (batchEnd - from + workers - 1) / workers;
+                List<Future<List<FileChange>>> slices = new ArrayList<>();
+                for (int w = 0; w < workers && from + w * sliceSize < batchEnd; w++) {
+                    DiffWorker worker = diffWorkers.get(w);
+                    int sliceFrom = from + w * sliceSize;
+                    int sliceTo = Math.min(batchEnd, sliceFrom + sliceSize);
+                    slices.add(executor.submit(() -> worker.diff(commits, sliceFrom, sliceTo)));
+                }
+                for (Future<List<FileChange>> slice : slices) {
+                    for (FileChange change : slice.get()) {
+                        consumer.accept(change);
+                        records++;
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException("Churn extraction failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            //an InterruptedIOException: the caller tells a cancellation from a failed diff
+            InterruptedIOException cancelled = new InterruptedIOException("Churn extraction interrupted");
+            cancelled.initCause(e);
+            throw cancelled;
+        } finally {
+            if (executor != sharedExecutor) executor.shutdownNow();
+            diffWorkers.forEach(DiffWorker::close);
+        }
+        return records;
+    }
+
+
+    private class DiffWorker implements AutoCloseable {
+        private final ObjectReader reader = repository.newObjectReader();
+        private final DiffFormatter formatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
+
+        DiffWorker() {
+            formatter.setReader(reader, repository.getConfig());
+            formatter.setDiffComparator(RawTextComparator.DEFAULT);
+            formatter.setPathFilter(PathSuffixFilter.create(".java"));
+            formatter.setDetectRenames(detectRenames);
+        }
+
+        // commits [from, to) of the table
+        List<FileChange> diff(CommitTable commits, int from, int to) throws IOException {
+            List<FileChange> changes = new ArrayList<>();
+
+            //a new walk per slice: parsed commits and trees are released with it
+            try (RevWalk walk = new RevWalk(reader)) {
+                for (int ordinal = from; ordinal < to; ordinal++) {
+                    RevCommit revCommit = walk.parseCommit(commits.id(ordinal));
+                    RevCommit parent = revCommit.getParentCount() > 0 ? walk.parseCommit(revCommit.getParent(0)) : null;
+
+                    for (DiffEntry entry : formatter.scan(parent != null ? parent.getTree() : null, revCommit.getTree())) {
+                        FileHeader header = formatter.toFileHeader(entry);
+                        if (header.getPatchType() != FileHeader.PatchType.UNIFIED) continue; //binary
+
+                        int added = 0;
+                        int deleted = 0;
+                        for (Edit edit : header.toEditList()) {
+                            added += edit.getLengthB();
+                            deleted += edit.getLengthA();
+                        }
+                        String path = entry.getChangeType() == DiffEntry.ChangeType.DELETE ? entry.getOldPath() : entry.getNewPath();
+                        changes.add(new FileChange(revCommit.getName(), path, added, deleted, entry.getChangeType()));
+                    }
+                }
+            }
+            return changes;
+        }
+
+        @Override
+        public void close() {
+            formatter.close();
+            reader.close();
+        }
+    }
+}
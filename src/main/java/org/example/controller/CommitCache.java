@@ -0,0 +1,107 @@
+package org.example.controller;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.example.entity.CommitTable;
+import org.example.util.Printer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+public class CommitCache {
+
+    /** Class responsibility: persist the commits extracted by GitController together with the tip they were walked from.
+     *  Binary file, one per project:
+     *      format version, repository path, tip id, commit count, distinct authors,
+     *      then for every commit: raw 20 byte id, author ordinal, date (epoch seconds)
+     *  Strings are stored as length-prefixed UTF-8. Messages are not cached: CommitTable reads them from the repository.
+     */
+
+    private static final int FORMAT_VERSION = 2;
+
+    private final Path file;
+
+    public CommitCache(Path dir, String projName) {
+        this.file = dir.resolve(projName + "Commits.bin");
+    }
+
+    public record Snapshot(String repository, ObjectId tip, CommitTable commits) {}
+
+
+    public Snapshot load(Repository gitRepository) {
+        if (!Files.exists(file)) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != FORMAT_VERSION) return null;
+            String repository = readString(in);
+            ObjectId tip = readId(in);
+            int count = in.readInt();
+            String[] authors = new String[in.readInt()];
+            for (int i = 0; i < authors.length; i++) authors[i] = readString(in);
+
+            CommitTable commits = new CommitTable(gitRepository, count);
+            for (int i = 0; i < count; i++) {
+                ObjectId id = readId(in);
+                String author = authors[in.readInt()];
+                commits.add(id, author, in.readLong());
+            }
+            return new Snapshot(repository, tip, commits);
+
+        } catch (IOException e) {
+            //an unreadable cache only costs a full walk
+            Printer.errorPrint("Commit cache is unreadable, commits will be extracted again: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void save(String repository, ObjectId tip, CommitTable commits) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, repository);
+            writeId(out, tip);
+            out.writeInt(commits.size());
+            out.writeInt(commits.authorCount());
+            for (int i = 0; i < commits.authorCount(); i++) writeString(out, commits.authorName(i));
+            byte[] raw = new byte[20];
+            for (int i = 0; i < commits.size(); i++) {
+                commits.copyRawId(i, raw, 0);
+                out.write(raw);
+                out.writeInt(commits.authorOrdinal(i));
+                out.writeLong(commits.epochSecond(i));
+            }
+        }
+        //moved in place only when complete, a crash never leaves half a cache behind
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    private static ObjectId readId(DataInputStream in) throws IOException {
+        byte[] raw = new byte[20];
+        in.readFully(raw);
+        return ObjectId.fromRaw(raw);
+    }
+
+    private static void writeId(DataOutputStream out, ObjectId id) throws IOException {
+        byte[] raw = new byte[20];
+        id.copyRawTo(raw, 0);
+        out.write(raw);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
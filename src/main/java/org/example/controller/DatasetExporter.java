@@ -0,0 +1,129 @@
+package org.example.controller;
+
+import org.example.util.ArffWriter;
+import org.example.util.ColumnarTable;
+import org.example.util.CsvWriter;
+import org.example.util.Printer;
+import org.example.util.RunContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+public class DatasetExporter {
+
+    /** Class responsibility: write the method dataset built by MethodExtractor in the formats the classifiers load.
+     *  - <proj>_Methods.col: the ColumnarTable itself, every column, read back with ColumnarTable.read.
+     *    MethodExtractor streams its rows straight to this file: a table mapped from it is not written again
+     *  - <proj>_Methods.csv: every column, one row per method and release, bugginess as yes/no
+     *  - <proj>_Methods.arff: features and bugginess only, for Weka (dataset.arff=false skips it)
+     *  Identifiers (release, path, method) stay out of the ARFF file: a classifier must not learn from them.
+     */
+
+    private final String projName;
+    private final boolean arff;
+    private final RunContext context;
+
+    public DatasetExporter() {
+        this(RunContext.standalone());
+    }
+
+    public DatasetExporter(RunContext context) {
+        this.projName = context.projectName();
+        this.arff = Boolean.parseBoolean(context.config().getProperty("dataset.arff", "true"));
+        this.context = context;
+    }
+
+    // where the columnar dataset of the project is exported
+    public static Path columnarPath(RunContext context) {
+        return context.outputDir().resolve(context.projectName() + "_Methods.col");
+    }
+
+    // returns the files written
+    public List<Path> export(ColumnarTable methods) throws IOException {
+        List<Path> written = new ArrayList<>();
+        Path columnar = columnarPath(context);
+        Files.createDirectories(columnar.toAbsolutePath().getParent());
+        //a table loaded from its checkpoint is copied, the table just extracted already is this file
+        if (!methods.source().map(source -> isSameFile(source, columnar)).orElse(false)) {
+            methods.write(columnar);
+        }
+        context.metrics().rowsWritten(columnar, methods.rowCount());
+        Printer.println(String.format("Columnar dataset: %d rows saved to %s (%d KB)",
+                methods.rowCount(), columnar, Files.size(columnar) / 1024));
+        written.add(columnar);
+
+        written.add(writeCsv(methods));
+        if (arff) {
+            written.add(writeArff(methods, projName + "_Methods.arff", row -> true));
+        }
+        return written;
+    }
+
+    // the csv twin of the table, read from it row by row
+    private Path writeCsv(ColumnarTable methods) throws IOException {
+        int buggy = methods.column(MethodExtractor.BUGGY);
+        String[] header = new String[methods.columnCount() + 1];
+        header[0] = "Project";
+        for (int column = 0; column < methods.columnCount(); column++) header[column + 1] = methods.columnName(column);
+
+        try (CsvWriter csv = CsvWriter.open(context, projName + "_Methods.csv")) {
+            csv.header(header);
+            for (int row = 0; row < methods.rowCount(); row++) {
+                csv.field(projName);
+                for (int column = 0; column < methods.columnCount(); column++) {
+                    if (column == buggy) {
+                        csv.field(methods.getInt(column, row) == 1 ? "yes" : "no");
+                    } else if (methods.type(column) == ColumnarTable.Type.INT) {
+                        csv.field(methods.getInt(column, row));
+                    } else {
+                        csv.field(methods.getString(column, row));
+                    }
+                }
+                csv.endRow();
+            }
+            Printer.println(String.format("Method dataset: %d rows saved to %s", methods.rowCount(), csv.getPath()));
+            return csv.getPath();
+        }
+    }
+
+    private static boolean isSameFile(Path source, Path target) {
+        try {
+            return Files.exists(target) && Files.isSameFile(source, target);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // the rows accepted by the filter, e.g. the releases of one training set
+    public Path writeArff(ColumnarTable methods, String fileName, IntPredicate rows) throws IOException {
+        int buggy = methods.column(MethodExtractor.BUGGY);
+        return writeArff(methods, fileName, rows, row -> methods.getInt(buggy, row) == 1);
+    }
+
+    // same, with the bugginess of every row given by 'buggy' instead of the Buggy column (e.g. walk-forward labels)
+    public Path writeArff(ColumnarTable methods, String fileName, IntPredicate rows, IntPredicate buggy) throws IOException {
+        int[] features = MethodExtractor.FEATURES.stream().mapToInt(methods::column).toArray();
+
+        int written = 0;
+        try (ArffWriter out = ArffWriter.open(context, fileName)) {
+            out.relation(methods.getName());
+            for (int feature : features) out.numeric(methods.columnName(feature));
+            out.nominal(MethodExtractor.BUGGY, "yes", "no");
+            out.data();
+
+            for (int row = 0; row < methods.rowCount(); row++) {
+                if (!rows.test(row)) continue;
+                for (int feature : features) out.value(methods.getInt(feature, row));
+                out.value(buggy.test(row) ? "yes" : "no").endRow();
+                written++;
+            }
+
+            Printer.println(String.format("ARFF dataset: %d rows saved to %s", written, out.getPath()));
+            return out.getPath();
+        }
+    }
+}
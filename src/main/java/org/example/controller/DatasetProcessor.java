@@ -1,21 +1,28 @@
 package org.example.controller;
 
-import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.example.entity.*;
-import org.example.util.ConfigurationManager;
+import org.example.util.ColumnarTable;
+import org.example.util.CsvWriter;
 import org.example.util.Pair;
 import org.example.util.Printer;
+import org.example.util.RunContext;
+import org.example.util.StageCodecs;
+import org.example.util.StageGraph;
+import org.example.util.TicketKeyMatcher;
 import org.json.JSONException;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class DatasetProcessor {
 
@@ -25,213 +32,479 @@ public class DatasetProcessor {
      * printing the final csv file
      */
     private final String projName;
-    private static final Pattern JIRA_ID_PATTERN = Pattern.compile("([A-Z]+-\\d+)");
-    private static final Logger LOGGER = Logger.getLogger(ProportionController.class.getName());
+    private final RunContext context;
+    private static final int MIN_LINKING_CHUNK = 1024;
+    private static final Logger LOGGER = Logger.getLogger(DatasetProcessor.class.getName());
+
+    private final JiraData extracted;
+
+    // releases and tickets as read from JIRA (the tickets as reported, no estimated IV)
+    public record JiraData(List<Release> releases, ReleaseTimeline timeline, List<JiraTicket> tickets) {}
+
+    // p of a project computed from its own tickets only, see BatchRunner; jira: what it was computed from,
+    // handed to the full run of the project so JIRA is not read twice
+    public record ProportionSample(String project, double p, int knownTickets, JiraData jira) {}
 
 
     public DatasetProcessor() {
-        this.projName = ConfigurationManager.getInstance().getProperty("project.name");
+        this(RunContext.standalone());
+    }
+
+    public DatasetProcessor(RunContext context) {
+        this(context, null);
+    }
+
+    // extracted: releases and tickets already read for this run (e.g. by sampleProportion), null to read them
+    public DatasetProcessor(RunContext context, JiraData extracted) {
+        this.context = context;
+        this.projName = context.projectName();
+        this.extracted = extracted;
+    }
+
+    // releases and tickets only: no git work
+    public ProportionSample sampleProportion() throws IOException, JSONException {
+        List<Release> releases = new ReleaseController(context).extractReleases();
+        ReleaseTimeline timeline = ReleaseTimeline.of(releases);
+        List<JiraTicket> tickets = new JiraController(context).extractTicketList(timeline);
+        ProportionController proportion = new ProportionController(context);
+        return new ProportionSample(projName, proportion.computeP(tickets), proportion.countKnownTickets(tickets),
+                new JiraData(releases, timeline, tickets));
     }
 
     public void extractData() throws IOException, JSONException {
         GitController gitController = null;
+        Throwable failure = null;
+        context.metrics().runStarted();
         try {
+            gitController = new GitController(context);
+            gitController.open(); //before the extraction stages: commits and tags read the same repository
+            StageGraph graph = new StageGraph(checkpointDir(), context.metrics());
+            Pipeline pipeline = defineStages(graph, gitController);
+
+            //JIRA requests and the git walk share nothing until linking: they run at the same time, joined below
+            if (Boolean.parseBoolean(context.config().getProperty("pipeline.concurrent.extraction", "true"))) {
+                graph.runConcurrently(pipeline.extraction());
+            }
+            for (StageGraph.Stage<?> target : pipeline.targets()) {
+                target.get();
+            }
+
+        } catch (IOException | JSONException e) {
+            failure = e;
+            Printer.errorPrint("Somethimg went wrong while extracting data of " + projName + ".");
+            throw e; //a batch run reports the failed project
+        } catch (RuntimeException | Error e) {
+            //a bug or an unchecked failure of a stage (e.g. UncheckedIOException): the report says failed all the same
+            failure = e;
+            Printer.errorPrint("Somethimg went wrong while extracting data of " + projName + ".");
+            throw e;
+        } finally {
+            if (gitController != null) {
+                gitController.close();
+            }
+            writeRunReport(failure);
+        }
+    }
+
+    private void writeRunReport(Throwable failure) {
+        //pipeline.report=false: no report; a report that cannot be written never fails the run
+        if (!Boolean.parseBoolean(context.config().getProperty("pipeline.report", "true"))) return;
+        Path report = context.outputDir().resolve(projName + "_RunReport.json");
+        try {
+            context.metrics().writeReport(report, projName, failure);
+            Printer.println("Run report saved to " + report);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot write the run report " + report, e);
+        }
+    }
+
+    private Path checkpointDir() {
+        //pipeline.checkpoints=false: every stage runs every time
+        if (!Boolean.parseBoolean(context.config().getProperty("pipeline.checkpoints", "true"))) return null;
+        return Path.of(context.config().getProperty("pipeline.checkpoint.dir", ".cache/stages"), projName);
+    }
+
+    // extraction: the independent stages reading JIRA and the repository; targets: the ones to run
+    // (everything else runs when one of them needs it)
+    private record Pipeline(List<StageGraph.Stage<?>> extraction, List<StageGraph.Stage<?>> targets) {}
+
+    // the stages of the pipeline
+    private Pipeline defineStages(StageGraph graph, GitController gitController) {
 
-            //extract data
-            ReleaseController releaseController = new ReleaseController();
-            List<Release> releases = releaseController.extractReleases();
+        //extract data: releases, tickets, commits and tags are read every time, the rest only when its inputs changed
+        JiraController jiraController = new JiraController(context);
+        ProportionController proportion = new ProportionController(context);
 
-            JiraController jiraController = new JiraController();
-            List<JiraTicket> tickets = jiraController.extractTicketList(releases);
+        StageGraph.Stage<List<Release>> releases = graph.source("releases", DatasetProcessor::hashReleases, List.of(),
+                in -> extracted != null ? extracted.releases() : new ReleaseController(context).extractReleases());
 
-            gitController = new GitController();
-            List<Commit> commits = gitController.extractCommits();
+        //indexed once, every date/name lookup goes through the timeline
+        StageGraph.Stage<ReleaseTimeline> timeline = graph.transientStage("timeline", List.of(releases), List.of(),
+                in -> extracted != null ? extracted.timeline() : ReleaseTimeline.of(in.get(releases)));
 
-            // link data
-            Map<String, List<Commit>> ticketToCommitsMap = linkCommitsToJiraTickets(commits, tickets);
+        StageGraph.Stage<List<JiraTicket>> tickets = graph.source("tickets", DatasetProcessor::hashTickets, List.of(timeline),
+                in -> extracted != null ? extracted.tickets() : jiraController.extractTicketList(in.get(timeline)));
 
+        StageGraph.Stage<CommitTable> commits = graph.source("commits", DatasetProcessor::hashCommits, List.of(),
+                in -> gitController.extractCommits());
+
+        //tags are read once and shared by partitioning and the later stages
+        StageGraph.Stage<List<GitTag>> tags = graph.source("tags", DatasetProcessor::hashTags, List.of(),
+                in -> gitController.extractTags());
+
+        StageGraph.Stage<Void> churn = graph.task("churn", List.of(commits),
+                outputParameters(context.config().getProperty("git.churn.renames", "true")),
+                in -> in.output(gitController.extractChurn(in.get(commits))));
+
+        // link data
+        StageGraph.Stage<Map<String, int[]>> linking = graph.persisted("linking", StageCodecs.keyToInts(), List.of(commits, tickets), List.of(), in -> {
+            Map<String, int[]> ticketToCommitsMap = linkCommitsToJiraTickets(in.get(commits), in.get(tickets));
             Printer.println(String.format("Linking complete: Found %d commits associated with %d unique bug tickets.",
-                    ticketToCommitsMap.values().stream().mapToLong(List::size).sum(),
+                    ticketToCommitsMap.values().stream().mapToLong(links -> links.length).sum(),
                     ticketToCommitsMap.size()
             ));
+            return ticketToCommitsMap;
+        });
 
-            Map<Release, List<Commit>> releaseCommits = partitionCommitsByRelease(releases, gitController);
-            Printer.println(String.format("Partitioning complete: Assigned commits to %d releases.", releaseCommits.size()));
+        StageGraph.Stage<Void> linkingValidation = graph.task("linkingValidation", List.of(linking, commits), outputParameters(),
+                in -> in.output(dumpLinkingResults(in.get(linking), in.get(commits), this.projName)));
 
-            dumpPartitioningResults(releaseCommits, this.projName);
+        StageGraph.Stage<Void> tagMatching = graph.task("tagMatching", List.of(releases, tags), outputParameters(),
+                in -> in.output(dumpTagMatchingResults(new TagMatcher().match(in.get(releases), in.get(tags)).report(), this.projName)));
 
-            // Now we have a map where each release is associated with the list of commit that were made during that release's development cycle.
+        StageGraph.Stage<List<Pair<Release, GitTag>>> releaseTags = graph.transientStage("releaseTags", List.of(releases, tags), List.of(),
+                in -> matchReleasesToTags(in.get(releases), in.get(tags)));
 
-            List<GitTag> tagList = gitController.extractTags();
+        StageGraph.Stage<Void> partitioning = graph.task("partitioning", List.of(releaseTags, commits), outputParameters(), in -> {
+            //partitioning appends the commits only reachable from release branches: it works on a copy,
+            //so the commits stage stays the same table for every other stage
+            CommitTable walked = in.get(commits);
+            CommitTable extended = new CommitTable(walked.getRepository(), walked.size());
+            extended.addAll(walked);
+            Map<Release, int[]> releaseCommits = partitionCommitsByRelease(in.get(releaseTags), extended, gitController);
+            Printer.println(String.format("Partitioning complete: Assigned commits to %d releases.", releaseCommits.size()));
+            in.output(dumpPartitioningResults(releaseCommits, extended, this.projName));
+        });
+
+        // .java files of every release, read from the tags without any checkout
+        StageGraph.Stage<Map<Release, List<SourceInventory.Entry>>> inventory = graph.transientStage("inventory", List.of(releaseTags), List.of(),
+                in -> buildSourceInventory(in.get(releaseTags), gitController));
+
+        StageGraph.Stage<Void> sourceInventory = graph.task("sourceInventory", List.of(inventory), outputParameters(),
+                in -> in.output(dumpSourceInventory(in.get(inventory), this.projName)));
+
+        // Proportion technique to estimate IV and AVs: p of every release
+        StageGraph.Stage<double[]> pByRelease = graph.persisted("proportion", StageCodecs.doubles(), List.of(tickets, timeline),
+                List.of(proportion.describe()), in -> proportion.computeReleaseP(in.get(tickets), in.get(timeline)));
+
+        // tickets with their IV estimated and their affected versions; the tickets stage keeps the reported ones
+        StageGraph.Stage<List<JiraTicket>> versions = graph.transientStage("versions", List.of(tickets, timeline, pByRelease), List.of(), in -> {
+            List<JiraTicket> estimated = in.get(tickets).stream().map(JiraTicket::reportedCopy).toList();
+            proportion.applyProportion(estimated, in.get(timeline), in.get(pByRelease));
+            jiraController.printTicketsToCSV(estimated);  //update tickets and versions
+            return estimated;
+        });
+
+        // methods touched by the fix commits of every ticket
+        StageGraph.Stage<Map<String, Set<String>>> touched = graph.persisted("touchedMethods", StageCodecs.keyToStrings(),
+                List.of(linking, tickets, commits), List.of(),
+                in -> new BugLabeler(gitController.getRepository()).touchedMethods(in.get(linking), in.get(commits), in.get(tickets)));
+
+        // method level metrics and bugginess of every release: touched methods are buggy in every affected version of their ticket
+        StageGraph.Stage<ColumnarTable> methods = graph.persisted("methods", StageCodecs.columnar(), List.of(inventory, touched, versions), List.of(), in -> {
+            Map<Release, Set<String>> buggyMethods = BugLabeler.label(in.get(touched), in.get(versions));
+            return new MethodExtractor(context).extractMethods(in.get(inventory), gitController.getRepository(), buggyMethods,
+                    DatasetExporter.columnarPath(context));
+        });
+
+        // exported for the classifiers
+        StageGraph.Stage<Void> export = graph.task("export", List.of(methods),
+                outputParameters(context.config().getProperty("dataset.arff", "true")),
+                in -> in.outputs(new DatasetExporter(context).export(in.get(methods))));
+
+        // training/testing pairs for a walk-forward evaluation, labeled with the tickets known at each release
+        boolean walkForward = Boolean.parseBoolean(context.config().getProperty("dataset.walkforward", "true"));
+        StageGraph.Stage<Void> walkForwardSets = graph.task("walkForward", List.of(methods, timeline, tickets, touched),
+                outputParameters(proportion.describe(), context.config().getProperty("dataset.arff", "true")),
+                in -> in.outputs(new WalkForwardGenerator(context).generate(in.get(methods), in.get(timeline), in.get(tickets), in.get(touched))));
+
+        //versions always runs: extractTicketList has just overwritten the tickets csv with the reported versions
+        List<StageGraph.Stage<?>> targets = new ArrayList<>(List.of(churn, linkingValidation, tagMatching, partitioning,
+                sourceInventory, versions, export));
+        if (walkForward) targets.add(walkForwardSets);
+        return new Pipeline(List.of(tickets, commits, tags, churn), targets);
+    }
 
-            // Proportion technique to estimate IV and AVs
-            ProportionController proportion = new ProportionController();
-            proportion.applyProportion(tickets, releases);
-            jiraController.printTicketsToCSV(tickets);  //update tickets and versions
 
-        } catch (IOException | JSONException | GitAPIException e) {
-            Printer.errorPrint("Somethimg went wrong while extracting data.");
-        } finally {
-            if (gitController != null) {
-                gitController.close();
-            }
-        }
+    // parameters of a stage writing output files: where and how they are written, then the stage's own
+    private List<String> outputParameters(String... parameters) {
+        List<String> all = new ArrayList<>();
+        all.add(context.outputDir().toAbsolutePath().normalize().toString());
+        all.add(context.config().getProperty("csv.gzip", "false"));
+        all.addAll(List.of(parameters));
+        return all;
     }
 
+    private static void hashReleases(List<Release> releases, MessageDigest digest) {
+        for (Release release : releases) {
+            StageGraph.update(digest, release.getId());
+            StageGraph.update(digest, release.getName());
+            StageGraph.update(digest, release.getDate().getEpochSecond());
+        }
+    }
 
+    private static void hashTickets(List<JiraTicket> tickets, MessageDigest digest) {
+        //what the later stages read: keys and versions as reported
+        for (JiraTicket ticket : tickets) {
+            StageGraph.update(digest, ticket.getName());
+            StageGraph.update(digest, ticket.openingOrdinal());
+            StageGraph.update(digest, ticket.injectOrdinal());
+            for (Release release : ticket.getFixVersions()) StageGraph.update(digest, release.getId());
+            StageGraph.update(digest, "|");
+            for (Release release : ticket.getAffectedVersions()) StageGraph.update(digest, release.getId());
+        }
+    }
 
-    public Map<String, List<Commit>> linkCommitsToJiraTickets(List<Commit> commits, List<JiraTicket> tickets) {
-
-        //hashset to lookup ticket id faster
-        Set<String> bugTicketKeys = tickets.stream()
-                .map(JiraTicket::getName)
-                .collect(Collectors.toSet());
+    private static void hashCommits(CommitTable commits, MessageDigest digest) {
+        //commits are the walk of a tip: ids in order identify the table
+        byte[] id = new byte[Constants.OBJECT_ID_LENGTH];
+        for (int i = 0; i < commits.size(); i++) {
+            commits.copyRawId(i, id, 0);
+            digest.update(id);
+        }
+    }
 
-        Map<String, List<Commit>> ticketCommitsMap = new HashMap<>();
+    private static void hashTags(List<GitTag> tags, MessageDigest digest) {
+        for (GitTag tag : tags) {
+            StageGraph.update(digest, tag.getName());
+            StageGraph.update(digest, tag.getCommitId().getName());
+        }
+    }
 
-        for (Commit commit : commits) {
 
-            //matching for a JIRA ticket id pattern
-            Matcher matcher = JIRA_ID_PATTERN.matcher(commit.getMessage());
+    // ordinals of the commits that mention every ticket, by ticket key
+    public Map<String, int[]> linkCommitsToJiraTickets(CommitTable commits, List<JiraTicket> tickets) {
 
-            while (matcher.find()) {
-                String ticketId = matcher.group(1);
+        //automaton built from the fetched bug tickets: a key from another project (or any other text)
+        //is never turned into a String, only the keys we care about are reported
+        TicketKeyMatcher keyMatcher = new TicketKeyMatcher(tickets.stream()
+                .map(JiraTicket::getName)
+                .collect(Collectors.toSet()));
+
+        //commits are scanned in parallel chunks, every chunk records its links in commit order;
+        //messages are read from the object database as raw bytes and never decoded;
+        //chunks are merged back in their own order, so no locking and the same result as a sequential scan
+        int chunkSize = Math.max(MIN_LINKING_CHUNK, commits.size() / (ForkJoinPool.getCommonPoolParallelism() * 4) + 1);
+        int chunks = (commits.size() + chunkSize - 1) / chunkSize;
+        List<long[]> chunkLinks = IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(chunk -> scanChunk(keyMatcher, commits, chunk * chunkSize, Math.min(commits.size(), (chunk + 1) * chunkSize)))
+                .toList();
+
+        //key indices follow the key order, so the arrays are filled sorted by key and then by commit order
+        int[] linkCounts = new int[keyMatcher.size()];
+        for (long[] links : chunkLinks) {
+            for (long link : links) linkCounts[(int) (link >>> 32)]++;
+        }
+        int[][] linksByKey = new int[keyMatcher.size()][];
+        for (int keyIndex = 0; keyIndex < linksByKey.length; keyIndex++) {
+            if (linkCounts[keyIndex] > 0) linksByKey[keyIndex] = new int[linkCounts[keyIndex]];
+        }
+        Arrays.fill(linkCounts, 0);
+        for (long[] links : chunkLinks) {
+            for (long link : links) {
+                int keyIndex = (int) (link >>> 32);
+                linksByKey[keyIndex][linkCounts[keyIndex]++] = (int) link;
+            }
+        }
 
-                // only care about this commit if it references one of the bug tickets we fetched
-                if (bugTicketKeys.contains(ticketId)) {
+        Map<String, int[]> ticketCommitsMap = new TreeMap<>();
+        for (int keyIndex = 0; keyIndex < linksByKey.length; keyIndex++) {
+            if (linksByKey[keyIndex] != null) ticketCommitsMap.put(keyMatcher.key(keyIndex), linksByKey[keyIndex]);
+        }
+        return ticketCommitsMap;
+    }
 
-                    // If the key `ticketId` is not in the map, it creates a new ArrayList,
-                    // puts it in the map, and then `add(commit)` is called on that new list.
-                    // If the key is already there, it simply gets the existing list and adds the commit.
-                    ticketCommitsMap.computeIfAbsent(ticketId, k -> new ArrayList<>()).add(commit);
-                }
+    private static long[] scanChunk(TicketKeyMatcher keyMatcher, CommitTable commits, int from, int to) {
+        ChunkLinks links = new ChunkLinks();
+        try (CommitTable.MessageReader messages = commits.messages()) {
+            for (int i = from; i < to; i++) {
+                links.commitIndex = i;
+                byte[] buffer = messages.raw(i);
+                keyMatcher.scan(buffer, CommitTable.messageStart(buffer), buffer.length, links);
             }
         }
-        dumpLinkingResults(ticketCommitsMap, this.projName);
+        return Arrays.copyOf(links.links, links.count);
+    }
 
-        return ticketCommitsMap;
+    // links of one chunk, packed as (key index << 32 | commit index) in the order they are found
+    private static final class ChunkLinks implements TicketKeyMatcher.MatchHandler {
+        private long[] links = new long[16];
+        private int count;
+        private int commitIndex;
+
+        @Override
+        public void onMatch(int keyIndex) {
+            if (count == links.length) links = Arrays.copyOf(links, count * 2);
+            links[count++] = ((long) keyIndex << 32) | commitIndex;
+        }
     }
 
 
-    private void dumpLinkingResults(Map<String, List<Commit>> ticketToCommitsMap, String projName) {
+    // returns the csv written; a failed write fails the stage, so its key is not saved
+    private Path dumpLinkingResults(Map<String, int[]> ticketToCommitsMap, CommitTable commits, String projName) throws IOException {
 
         String outname = projName + "LinkingValidation.csv";
-        String dir = "src/main/outputFiles/" + projName;
 
-        try (FileWriter writer = new FileWriter(new File(dir, outname))) {
-            writer.append("TicketID,CommitHash,CommitMessage\n");
+        try (CsvWriter csv = CsvWriter.open(context, outname);
+             CommitTable.MessageReader messages = commits.messages()) {
+            csv.header("TicketID", "CommitHash", "CommitMessage");
 
-            // Iteration through the hash map: for each ticket ID, select all commits that are associated to it and print them
-            for (Map.Entry<String, List<Commit>> entry : ticketToCommitsMap.entrySet()) {
+            // Iteration through the map, sorted by ticket ID: for each ticket ID, print all commits associated to it in commit order
+            for (Map.Entry<String, int[]> entry : ticketToCommitsMap.entrySet()) {
                 String ticketId = entry.getKey();
-                List<Commit> commits = entry.getValue();
-
-                for (Commit commit : commits) {
-                    writer.append(ticketId);
-                    writer.append(",");
-                    writer.append(commit.getCommitID());
-                    writer.append(",");
-
-                    // Cleans the commit message for CSV compatibility
-                    String cleanMessage = commit.getMessage().replace("\n", " ").replace("\"", "\"\"");
-                    writer.append("\"").append(cleanMessage).append("\"");
-                    writer.append("\n");
+                for (int commit : entry.getValue()) {
+                    csv.field(ticketId).field(commits.name(commit)).field(messages.message(commit)).endRow();
                 }
             }
-        } catch (IOException e) {
+            Printer.println("Linking validation results saved to: " + csv.getPath());
+            return csv.getPath();
+        } catch (IOException | UncheckedIOException e) {
             Printer.errorPrint("Failed to write linking validation file: " + e.getMessage());
+            throw e instanceof UncheckedIOException unchecked ? unchecked.getCause() : (IOException) e;
         }
-        Printer.println("Linking validation results saved to: " + dir + "/" + outname);
     }
 
 
 
-    private Map<Release, List<Commit>> partitionCommitsByRelease(List<Release> jiraReleases, GitController gitController) throws IOException, GitAPIException {
-        //Associates commits with their respective releases by matching JIRA releases to Git tags
-        //       returns a map where each Release is a key for a list of Commits in that release cycle
+    private List<Pair<Release, GitTag>> matchReleasesToTags(List<Release> jiraReleases, List<GitTag> allTags) {
+
+        // Match JIRA Releases to Git Tags through their normalized version keys
+        // e.g., JIRA "2.1.0" matches Git tags "2.1.0", "openjpa-2.1.0" or "2.1.0-incubating", but not "2.1.0-rc1" or "2.1.0.1".
+        TagMatcher.Result matching = new TagMatcher().match(jiraReleases, allTags);
+        List<Pair<Release, GitTag>> matchedPairs = new ArrayList<>(matching.matchedPairs());
 
-        List<GitTag> allTags = gitController.extractTags();
-        Map<Release, List<Commit>> releaseCommits = new LinkedHashMap<>(); // LinkedHashMap preserves insertion order
+        // Sort by the commit date for chronological order
+        matchedPairs.sort(Comparator.comparing(p -> p.getRight().getCommitDate()));
+        return matchedPairs;
+    }
 
-        // Match JIRA Releases to Git Tags
-        List<Pair<Release, GitTag>> matchedPairs = new ArrayList<>();
-        for (Release release : jiraReleases) {
+    private Map<Release, int[]> partitionCommitsByRelease(List<Pair<Release, GitTag>> matchedPairs,
+                                                          CommitTable commits, GitController gitController) throws IOException {
+        //Associates commits with their respective releases, given the releases matched to their tags in chronological order
+        //       returns a map where each Release is a key for the ordinals of the commits in that release cycle
 
-            //finds a tag whose name is contained within the JIRA release name, or vice versa
-            // e.g., JIRA "Version 2.1.0" matches Git tag "2.1.0".
+        Map<Release, int[]> releaseCommits = new LinkedHashMap<>(); // LinkedHashMap preserves insertion order
 
-            allTags.stream()
-                    .filter(tag -> release.getName().contains(tag.getName()) || tag.getName().contains(release.getName()))
-                    .findFirst()
-                    .ifPresent(tag -> matchedPairs.add(new Pair<>(release, tag)));
+        // Partition Commits with a single walk: a commit belongs to the earliest release whose tag reaches it
+        List<ObjectId> releaseTips = matchedPairs.stream().map(p -> p.getRight().getCommitId()).toList();
+        List<int[]> partitions = gitController.partitionCommits(releaseTips, commits);
+        for (int i = 0; i < matchedPairs.size(); i++) {
+            releaseCommits.put(matchedPairs.get(i).getLeft(), partitions.get(i));
         }
 
-        // Sort by the commit date for chronological order
-        matchedPairs.sort(Comparator.comparing(p -> p.getRight().getCommitDate()));
+        return releaseCommits;
+    }
+
+    private Map<Release, List<SourceInventory.Entry>> buildSourceInventory(List<Pair<Release, GitTag>> matchedPairs,
+                                                                           GitController gitController) throws IOException {
+        //releases in chronological order: each one only costs the files changed since the previous one,
+        //and a blob already seen (in this run or in an earlier one) is never read again
+        String cacheDir = context.config().getProperty("git.cache.dir", ".cache/git");
+        SourceInventory inventory = new SourceInventory(Path.of(cacheDir), this.projName);
 
-        // Partition Commits using git log ranges
-        ObjectId previousReleaseCommitId = null;
+        Map<Release, List<SourceInventory.Entry>> releaseFiles = new LinkedHashMap<>();
         for (Pair<Release, GitTag> pair : matchedPairs) {
-            Release currentRelease = pair.getLeft();
-            ObjectId currentReleaseCommitId = pair.getRight().getCommitId();
-
-            List<Commit> commitsInReleaseCycle;
-            if (previousReleaseCommitId == null) {
-                commitsInReleaseCycle = gitController.getCommitsInRange(null, currentReleaseCommitId);
-            } else {
-                commitsInReleaseCycle = gitController.getCommitsInRange(previousReleaseCommitId, currentReleaseCommitId);
+            try (ReleaseSnapshot snapshot = gitController.openSnapshot(pair.getRight().getName(), pair.getRight().getCommitId())) {
+                releaseFiles.put(pair.getLeft(), inventory.next(snapshot));
             }
+        }
+        inventory.save();
+
+        Printer.println(String.format("Source inventory: %d releases, %d distinct blobs, %d read in this run.",
+                releaseFiles.size(), inventory.getBlobCount(), inventory.getBlobsRead()));
+        return releaseFiles;
+    }
 
-            releaseCommits.put(currentRelease, commitsInReleaseCycle);
-            previousReleaseCommitId = currentReleaseCommitId;
+    private Path dumpTagMatchingResults(List<TagMatcher.Entry> report, String projName) throws IOException {
+        String outname = projName + "_TagMatching.csv";
+
+        Map<TagMatcher.Status, Integer> counts = new EnumMap<>(TagMatcher.Status.class);
+        try (CsvWriter csv = CsvWriter.open(context, outname)) {
+            csv.header("Status", "ReleaseName", "TagName", "Candidates");
+            for (TagMatcher.Entry entry : report) {
+                counts.merge(entry.status(), 1, Integer::sum);
+                csv.field(entry.status().name())
+                        .field(entry.release() != null ? entry.release().getName() : "")
+                        .field(entry.tag() != null ? entry.tag().getName() : "")
+                        .field(entry.candidates().stream().map(GitTag::getName).collect(Collectors.joining(";")))
+                        .endRow();
+            }
+            Printer.println("Release/tag matching: " + counts + ", details in " + csv.getPath());
+            return csv.getPath();
+        } catch (IOException e) {
+            Printer.errorPrint("Failed to write tag matching file: " + e.getMessage());
+            throw e;
         }
+    }
 
-        return releaseCommits;
+    private Path dumpSourceInventory(Map<Release, List<SourceInventory.Entry>> releaseFiles, String projName) throws IOException {
+        String outname = projName + "_SourceInventory.csv";
+
+        try (CsvWriter csv = CsvWriter.open(context, outname)) {
+            csv.header("ReleaseName", "Path", "BlobId", "Size", "LOC");
+            for (Map.Entry<Release, List<SourceInventory.Entry>> entry : releaseFiles.entrySet()) {
+                for (SourceInventory.Entry file : entry.getValue()) {
+                    csv.field(entry.getKey().getName())
+                            .field(file.path())
+                            .field(file.blobId().getName())
+                            .field(file.stats().size())
+                            .field(file.stats().loc())
+                            .endRow();
+                }
+            }
+            return csv.getPath();
+        } catch (IOException e) {
+            Printer.errorPrint("Failed to write source inventory file: " + e.getMessage());
+            throw e;
+        }
     }
 
-    private void dumpPartitioningResults(Map<Release, List<Commit>> releaseCommits, String projName) {
+    private Path dumpPartitioningResults(Map<Release, int[]> releaseCommits, CommitTable commits, String projName) throws IOException {
         String outname = projName + "_PartitioningValidation.csv";
-        String dir = "src/main/outputFiles/" + projName;
 
-
-        try (FileWriter writer = new FileWriter(new File(dir, outname))) {
+        try (CsvWriter csv = CsvWriter.open(context, outname);
+             CommitTable.MessageReader messages = commits.messages()) {
             // Write the header of the CSV file
-            writer.append("ReleaseName,ReleaseDate,CommitHash,CommitDate,CommitMessage\n");
+            csv.header("ReleaseName", "ReleaseDate", "CommitHash", "CommitDate", "CommitMessage");
 
             // ITERATE OVER THE MAP'S ENTRY SET for efficiency.
-            for (Map.Entry<Release, List<Commit>> entry : releaseCommits.entrySet()) {
+            for (Map.Entry<Release, int[]> entry : releaseCommits.entrySet()) {
                 Release release = entry.getKey();
-                List<Commit> commits = entry.getValue();
+                int[] releaseCycle = entry.getValue();
+                String releaseDate = release.getDate().toString();
 
                 // If a release has no commits, you might still want to log it to see it was processed
-                if (commits.isEmpty()) {
-                    writer.append(release.getName());
-                    writer.append(",");
-                    writer.append(release.getDate().toString());
-                    writer.append(",NO_COMMITS,N/A,N/A\n");
+                if (releaseCycle.length == 0) {
+                    csv.row(release.getName(), releaseDate, "NO_COMMITS", "N/A", "N/A");
                     continue; // Go to the next release
                 }
 
-                for (Commit commit : commits) {
-                    writer.append(release.getName());
-                    writer.append(",");
-                    writer.append(release.getDate().toString());
-                    writer.append(",");
-                    writer.append(commit.getCommitID());
-                    writer.append(",");
-                    writer.append(commit.getDate().toString());
-                    writer.append(",");
-
-                    // Clean the commit message for CSV compatibility
-                    String cleanMessage = commit.getMessage().replace("\n", " ").replace("\"", "\"\"");
-                    writer.append("\"").append(cleanMessage).append("\"");
-                    writer.append("\n");
+                for (int commit : releaseCycle) {
+                    csv.field(release.getName())
+                            .field(releaseDate)
+                            .field(commits.name(commit))
+                            .field(commits.date(commit).toString())
+                            .field(messages.message(commit))
+                            .endRow();
                 }
             }
-        } catch (IOException e) {
-            Printer.println("Failed to write partitioning validation file: " + e.getMessage());
+            Printer.println("Partitioning validation results saved to: " + csv.getPath());
+            return csv.getPath();
+        } catch (IOException | UncheckedIOException e) {
+            Printer.errorPrint("Failed to write partitioning validation file: " + e.getMessage());
+            throw e instanceof UncheckedIOException unchecked ? unchecked.getCause() : (IOException) e;
         }
-        Printer.println("Partitioning validation results saved to: " + dir + "/" + outname);
     }
 
 }
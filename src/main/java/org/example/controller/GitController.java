@@ -2,22 +2,33 @@ package org.example.controller;
 
 import org.eclipse.jgit.api.CheckoutCommand;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.LogCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.example.entity.GitTag;
 import org.example.util.ConfigurationManager;
+import org.example.util.CsvWriter;
 import org.example.util.Printer;
-import org.example.entity.Commit;
+import org.example.util.RunContext;
+import org.example.entity.CommitTable;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,84 +40,199 @@ public class GitController {
     /** Class responsibility: use JGit lib to access and manage Git repositories. Thus:
      *      - extract commits
      *      - extract tags
+     *      - extract churn (added/deleted lines per file and commit)
+     *      - open release snapshots (source files of a tag, read without checkout)
      *      */
 
 
+    private final ConfigurationManager config;
+    private final ForkJoinPool sharedWorkers;
+    private final RunContext context;
     private String projName;
     private Git git;
     private Repository repository;
     private static final Logger LOGGER = Logger.getLogger(GitController.class.getName());
 
+    public GitController() {
+        this(RunContext.standalone());
+    }
 
-    public List<Commit> extractCommits() {
+    public GitController(RunContext context) {
+        this.config = context.config();
+        this.sharedWorkers = context.workers();
+        this.context = context;
+        this.projName = config.getProperty("project.name");
+    }
 
-        projName = ConfigurationManager.getInstance().getProperty("project.name");
-        String gitPath = ConfigurationManager.getInstance().getProperty("git.path");
 
-        List<Commit> commitList = new ArrayList<>();
+    // opens the repository; called by extractCommits when nobody did it before
+    public synchronized void open() throws IOException {
+        if (this.repository != null) return;
+        FileRepositoryBuilder builder = new FileRepositoryBuilder();
+        this.repository = builder.setGitDir(new File(config.getProperty("git.path")))
+                .readEnvironment()
+                .findGitDir()
+                .build();
+        this.git = new Git(this.repository);
+    }
 
-        try {
+    public CommitTable extractCommits() throws InterruptedIOException {
 
-            //opens the repository
-            FileRepositoryBuilder builder = new FileRepositoryBuilder();
-             this.repository = builder.setGitDir(new File(gitPath))
-                    .readEnvironment()
-                    .findGitDir()
-                    .build();
-            this.git = new Git(this.repository);
+        String gitPath = config.getProperty("git.path");
+        String cacheDir = config.getProperty("git.cache.dir", ".cache/git");
 
-            //access to git log to read commits
-            Iterable<RevCommit> commits = git.log().call();
+        CommitTable commits = new CommitTable(null, 0);
 
-            for (RevCommit commit : commits) {
+        try {
+
+            open();
+            commits = new CommitTable(this.repository, 0);
 
-                //create new Commit and add it to the list of commits
-                commitList.add(new Commit(commit.getName(), commit.getAuthorIdent().getName(),
-                        commit.getAuthorIdent().getWhenAsInstant(), commit.getFullMessage()));
+            ObjectId head = this.repository.resolve(Constants.HEAD);
+            if (head == null) {
+                Printer.errorPrint("Repository has no commits.");
+                return commits;
             }
 
-            printCommitsToCSV(commitList);
+            CommitCache commitCache = new CommitCache(Path.of(cacheDir), projName);
+            commits = walkCommits(head, commitCache.load(this.repository), gitPath);
+            commitCache.save(gitPath, head, commits);
+
+            printCommitsToCSV(commits);
 
-        } catch (IOException | GitAPIException e) {
+        } catch (InterruptedIOException e) {
+            throw e; //cancelled: a partial table must not reach the later stages
+        } catch (IOException e) {
             Printer.errorPrint("Error while extracting commits.");
         }
-        return commitList;
+        return commits;
+    }
+
+    private CommitTable walkCommits(ObjectId head, CommitCache.Snapshot cached, String gitPath) throws IOException {
+
+        //only the commits added since the cached tip are walked, as long as that tip is still part of the history
+
+        if (cached != null && cached.repository().equals(gitPath)) {
+            if (cached.tip().equals(head)) {
+                LOGGER.log(Level.INFO, "No new commits since {0}", head.getName());
+                return cached.commits();
+            }
+            if (isAncestor(cached.tip(), head)) {
+                //git log <cached tip>..HEAD, then the cached commits: the git log order as long as the new commits
+                //are a single line of history, a full walk reaches the cached tip with nothing else left to walk.
+                //A merge can bring in commits older than ones already cached, which git log interleaves with them
+                CommitTable commits = new CommitTable(this.repository, cached.commits().size());
+                int merges = walkInto(commits, head, cached.tip());
+                if (merges == 0) {
+                    LOGGER.log(Level.INFO, "{0} new commits since the cached tip", commits.size());
+                    commits.addAll(cached.commits());
+                    return commits;
+                }
+                Printer.println(merges + " merge commits since the cached tip " + cached.tip().getName() + ", extracting all commits again.");
+            } else {
+                Printer.println("History was rewritten since the cached tip " + cached.tip().getName() + ", extracting all commits again.");
+            }
+        }
+
+        //same walk as git log
+        CommitTable commits = new CommitTable(this.repository, 0);
+        walkInto(commits, head, null);
+        return commits;
+    }
+
+    private boolean isAncestor(ObjectId ancestor, ObjectId tip) throws IOException {
+        try (RevWalk walk = new RevWalk(this.repository)) {
+            return walk.isMergedInto(walk.parseCommit(ancestor), walk.parseCommit(tip));
+        } catch (MissingObjectException | IncorrectObjectTypeException e) {
+            //the cached tip is gone (gc after a rewrite)
+            return false;
+        }
+    }
+
+    // appends the commits reachable from start and not from exclude (when given), in git log order;
+    // returns how many of them are merge commits
+    private int walkInto(CommitTable commits, ObjectId start, ObjectId exclude) throws IOException {
+        long startNanos = System.nanoTime();
+        int before = commits.size();
+        int merges = 0;
+        try (RevWalk walk = new RevWalk(this.repository)) {
+            walk.markStart(walk.parseCommit(start));
+            if (exclude != null) walk.markUninteresting(walk.parseCommit(exclude));
+            for (RevCommit commit : walk) {
+                if ((commits.size() & 0xFFF) == 0 && Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Commit walk cancelled"); //e.g. the JIRA fetch running next to it failed
+                }
+                if (commit.getParentCount() > 1) merges++;
+                PersonIdent author = commit.getAuthorIdent();
+                commits.add(commit, author.getName(), author.getWhenAsInstant().getEpochSecond());
+                commit.disposeBody(); //the message is read again from the object database only if it is needed
+            }
+        }
+        context.metrics().throughput("commits", commits.size() - before, System.nanoTime() - startNanos);
+        return merges;
     }
 
-    public void printCommitsToCSV(List<Commit> commits ){
+    public void printCommitsToCSV(CommitTable commits){
 
-        int i;
         String outname = projName + "Commits.csv";
-        String dir = "src/main/outputFiles/" + projName;
 
-        try (FileWriter fileWriter = new FileWriter(new File (dir, outname))) {
+        try (CsvWriter csv = CsvWriter.open(context, outname);
+             CommitTable.MessageReader messages = commits.messages()) {
 
             //csv file columns
-            fileWriter.append("Index,CommitID,Author,Date,Message");
-            fileWriter.append("\n");
-
-            for ( i = 0; i < commits.size(); i++){
-                int index = i+1;
-
-                fileWriter.append(Integer.toString(index));
-                fileWriter.append(",");
-                fileWriter.append(commits.get(i).getCommitID());
-                fileWriter.append(",");
-                fileWriter.append(commits.get(i).getAuthor());
-                fileWriter.append(",");
-                fileWriter.append(commits.get(i).getDate());
-                fileWriter.append(",");
-                String message = commits.get(i).getMessage().replace("\n", " ").replace(",", ";"); // comment cleanup for csv
-                fileWriter.append("\"").append(message).append("\"");
-                fileWriter.append(",");
-                fileWriter.append("\n");
-                fileWriter.flush();
-
+            csv.header("Index", "CommitID", "Author", "Date", "Message");
+
+            for (int i = 0; i < commits.size(); i++){
+                csv.field(i + 1L)
+                        .field(commits.name(i))
+                        .field(commits.author(i))
+                        .field(commits.date(i).toString())
+                        .field(messages.message(i))
+                        .endRow();
             }
 
-        } catch (IOException e) {
-            Printer.println("Error in csv writer - GitController");
-            e.printStackTrace();
+        } catch (IOException | UncheckedIOException e) {
+            Printer.errorPrint("Error in csv writer - GitController: " + e.getMessage());
+        }
+    }
+
+    // returns the csv written; a failed or cancelled extraction throws: the churn task must not complete over a truncated csv
+    public Path extractChurn(CommitTable commits) throws IOException {
+
+        //(commit, path, added, deleted, changeType) for every .java file touched, streamed to csv as it is computed
+        //in a batch the diff workers run on the shared pool, one per pool thread
+        int workers = sharedWorkers != null ? sharedWorkers.getParallelism()
+                : config.getIntProperty("git.churn.workers", Runtime.getRuntime().availableProcessors());
+        boolean detectRenames = Boolean.parseBoolean(config.getProperty("git.churn.renames", "true"));
+
+        String outname = projName + "Churn.csv";
+        long start = System.nanoTime();
+
+        try (CsvWriter csv = CsvWriter.open(context, outname)) {
+            csv.header("CommitID", "Path", "Added", "Deleted", "ChangeType");
+
+            ChurnExtractor extractor = new ChurnExtractor(this.repository, workers, detectRenames, sharedWorkers);
+            long records = extractor.extract(commits, change -> {
+                try {
+                    csv.field(change.commitId())
+                            .field(change.path())
+                            .field(change.added())
+                            .field(change.deleted())
+                            .field(change.changeType().name())
+                            .endRow();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            LOGGER.log(Level.INFO, "{0} file changes extracted", records);
+            context.metrics().throughput("fileChanges", records, System.nanoTime() - start);
+            return csv.getPath();
+
+        } catch (InterruptedIOException e) {
+            throw e; //cancelled, e.g. the JIRA fetch running next to it failed
+        } catch (IOException | UncheckedIOException e) {
+            Printer.errorPrint("Error while extracting churn: " + e.getMessage());
+            throw e instanceof UncheckedIOException unchecked ? unchecked.getCause() : (IOException) e;
         }
     }
 
@@ -135,18 +261,11 @@ public class GitController {
     private void printTagsToCSV(List<GitTag> tagList){
 
         String outname = projName + "Tags.csv";  //output file
-        String dir = "src/main/outputFiles/" + projName;    //output directory
 
-        try (FileWriter fileWriter = new FileWriter(new File (dir, outname))) {
+        try (CsvWriter csv = CsvWriter.open(context, outname)) {
+            csv.header("TagName", "CommitID", "CommitDate");
             for (GitTag tag: tagList) {
-                fileWriter.append(tag.getName());
-                fileWriter.append(",");
-                fileWriter.append(tag.getCommitId().toString());
-                fileWriter.append(",");
-                fileWriter.append(tag.getCommitDate().toString());
-                fileWriter.append(",");
-                fileWriter.append("\n");
-
+                csv.row(tag.getName(), tag.getCommitId().getName(), tag.getCommitDate());
             }
         } catch (IOException e){
             Printer.errorPrint("Error printing Tags to CSV.");
@@ -154,27 +273,80 @@ public class GitController {
 
     }
 
-    public List<Commit> getCommitsInRange(ObjectId startCommitId, ObjectId endCommitId) throws GitAPIException, IOException {
+    public List<int[]> partitionCommits(List<ObjectId> releaseTips, CommitTable commits) throws IOException {
+
+        //single walk over the history of all the release tips (given in chronological order):
+        //every commit goes to the earliest release whose tip reaches it.
+        //Topological order visits children before parents, so when a commit is reached its release is final
+        //and is simply handed down to its parents.
+        //Commits are returned as ordinals of the table, commits of release branches that HEAD does not reach are appended to it.
+
+        int[][] partitions = new int[releaseTips.size()][16];
+        int[] counts = new int[releaseTips.size()];
+        if (releaseTips.isEmpty()) return List.of();
+
+        try (ReleaseWalk walk = new ReleaseWalk(this.repository)) {
+            walk.sort(RevSort.TOPO);
+            walk.sort(RevSort.COMMIT_TIME_DESC, true);
+
+            for (int i = 0; i < releaseTips.size(); i++) {
+                ReleaseCommit tip = (ReleaseCommit) walk.parseCommit(releaseTips.get(i));
+                tip.release = Math.min(tip.release, i);
+                walk.markStart(tip);
+            }
+
+            for (RevCommit revCommit : walk) {
+                ReleaseCommit commit = (ReleaseCommit) revCommit;
+                for (RevCommit parent : commit.getParents()) {
+                    ReleaseCommit releaseParent = (ReleaseCommit) parent;
+                    releaseParent.release = Math.min(releaseParent.release, commit.release);
+                }
+
+                int release = commit.release;
+                if (counts[release] == partitions[release].length) {
+                    partitions[release] = Arrays.copyOf(partitions[release], counts[release] * 2);
+                }
+                partitions[release][counts[release]++] = ordinalOf(commits, commit);
+            }
+        }
+
+        List<int[]> result = new ArrayList<>(partitions.length);
+        for (int i = 0; i < partitions.length; i++) result.add(Arrays.copyOf(partitions[i], counts[i]));
+        return result;
+    }
+
+    private static int ordinalOf(CommitTable commits, RevCommit commit) {
+        int ordinal = commits.ordinalOf(commit);
+        if (ordinal < 0) {
+            PersonIdent author = commit.getAuthorIdent();
+            ordinal = commits.add(commit, author.getName(), author.getWhenAsInstant().getEpochSecond());
+        }
+        return ordinal;
+    }
 
-        List<Commit> commitsInRange = new ArrayList<>();
-        LogCommand logCommand = this.git.log();
+    //RevWalk whose commits carry the index of the earliest release reaching them
+    private static class ReleaseWalk extends RevWalk {
+        ReleaseWalk(Repository repository) {
+            super(repository);
+        }
 
-        if (startCommitId == null) {
-            //sets the starting point of the history walk
-            logCommand.add(endCommitId);
-        } else {
-            // .addRange() is the JGit equivalent of 'git log <start>..<end>'
-            logCommand.addRange(startCommitId, endCommitId);
+        @Override
+        protected RevCommit createCommit(AnyObjectId id) {
+            return new ReleaseCommit(id);
         }
+    }
 
-        Iterable<RevCommit> commits = logCommand.call();
+    @SuppressWarnings("serial") //only lives in the RevWalk that partitions the commits, never serialized
+    private static class ReleaseCommit extends RevCommit {
+        int release = Integer.MAX_VALUE;
 
-        // like getAllCommits(). this could be extracted to a private helper method
-        for (RevCommit revCommit : commits) {
-            commitsInRange.add(new Commit(revCommit.getName(), revCommit.getAuthorIdent().getName(),
-                    revCommit.getAuthorIdent().getWhenAsInstant(), revCommit.getFullMessage()));
+        ReleaseCommit(AnyObjectId id) {
+            super(id);
         }
-        return commitsInRange;
+    }
+
+    public Repository getRepository() {
+        return this.repository;
     }
 
     /**
@@ -182,10 +354,30 @@ public class GitController {
      * Should be called when the controller is no longer needed.
      */
     public void close() {
-        this.git.close();
-        this.repository.close();
+        if (this.git != null) this.git.close();
+        if (this.repository != null) this.repository.close();
+    }
+
+    public ReleaseSnapshot openSnapshot(String tagName) throws IOException {
+
+        //the tag is peeled to its commit, the snapshot reads that commit's tree
+        ObjectId commitId = this.repository.resolve(Constants.R_TAGS + tagName + "^{commit}");
+        if (commitId == null) {
+            throw new IOException("Tag not found: " + tagName);
+        }
+        return openSnapshot(tagName, commitId);
     }
 
+    public ReleaseSnapshot openSnapshot(String name, ObjectId commitId) throws IOException {
+        try (RevWalk walk = new RevWalk(this.repository)) {
+            return new ReleaseSnapshot(this.repository, name, walk.parseCommit(commitId).getTree());
+        }
+    }
+
+    /**
+     * @deprecated rewrites the working tree and allows one release at a time, use {@link #openSnapshot(String)}
+     */
+    @Deprecated
     public boolean checkoutToTag(String tagName) {
         LOGGER.log(Level.INFO, "Attempting to checkout to tag: {0}", tagName);
 
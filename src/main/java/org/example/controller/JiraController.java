@@ -1,187 +1,281 @@
 package org.example.controller;
 
+import org.example.entity.JiraIssueRecord;
 import org.example.entity.JiraTicket;
 import org.example.entity.Release;
+import org.example.entity.ReleaseTimeline;
 import org.example.util.ConfigurationManager;
+import org.example.util.CsvWriter;
+import org.example.util.HttpResponseCache;
 import org.example.util.Printer;
-import org.json.JSONArray;
+import org.example.util.RunContext;
 import org.json.JSONException;
-import org.json.JSONObject;
 import java.io.*;
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 public class JiraController {
 
     private String projName;
-    private static final Logger LOGGER = Logger.getLogger(ProportionController.class.getName());
+    private final String baseUrl;
+    private final int fetchConcurrency;
+    private final int fetchRetries;
+    private final boolean incrementalSync;
+    private final int syncOverlapHours;
+    private final String storeDir;
+    private final long retryBackoffMillis;
+    private final RunContext context;
+    private final PageSource pageSource;
+
+    private static final int MAX_RESULTS = 100;
+    private static final int MAX_KEY_RESULTS = 1000;
+    private static final int KEYS_PER_QUERY = 50;
+    private static final String FIXED_BUGS_JQL = "project=%s AND issuetype=Bug AND status in(Resolved,Closed) AND resolution=Fixed";
+    private static final String TICKET_FIELDS = "id,key,status,resolution,created,versions,fixVersions,comment";
+    //JQL wants minutes, in the server time zone: the sync overlap covers the difference with UTC
+    private static final DateTimeFormatter JQL_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm").withZone(ZoneOffset.UTC);
+    private static final Logger LOGGER = Logger.getLogger(JiraController.class.getName());
 
     public JiraController() {
-        this.projName = ConfigurationManager.getInstance().getProperty("project.name");
+        this(RunContext.standalone());
     }
 
-    public List<JiraTicket> extractTicketList(List<Release> allReleases) throws IOException, JSONException {
+    // body of a REST response: the HTTP cache, or a stub in the tests
+    interface PageSource {
+        Reader open(String url, boolean revalidate) throws IOException;
+    }
 
-        //release list is needed to map ticket dates to releases
+    public JiraController(RunContext context) {
+        this(context, null);
+    }
 
-        List<JiraTicket> tickets = new ArrayList<>();
-        int startPage = 0;
-        int total = 0;
-        int maxResults = 100;
-
-        do {
-            String url = String.format(
-                    "https://issues.apache.org/jira/rest/api/2/search?jql=project=%s" +
-                            "%%20AND%%20issuetype=Bug%%20AND%%20status%%20in(Resolved,Closed)%%20AND%%20resolution=Fixed" +
-                            "&fields=id,key,resolution,created,versions,fixVersions,comment" +
-                            "&startAt=%d&maxResults=%d",
-                    projName, startPage, maxResults
-            );
-
-            Printer.println("Fetching URL: " + url);
-
-            JSONObject json = readJsonFromUrl(url);
-            if (json == null) break; //safe handling
-
-            JSONArray jiraIssues = json.getJSONArray("issues");
-            if (startPage == 0) { //only read total once
-                total = json.getInt("total");
-            }
+    JiraController(RunContext context, PageSource pageSource) {
+        ConfigurationManager config = context.config();
+        this.projName = config.getProperty("project.name");
+        this.baseUrl = config.getProperty("jira.baseurl", "https://issues.apache.org/jira");
+        this.fetchConcurrency = Math.max(1, config.getIntProperty("jira.fetch.concurrency", 8));
+        this.fetchRetries = Math.max(0, config.getIntProperty("jira.fetch.retries", 3));
+        this.incrementalSync = config.getProperty("jira.sync.mode", "full").equalsIgnoreCase("incremental");
+        this.syncOverlapHours = Math.max(0, config.getIntProperty("jira.sync.overlap.hours", 24));
+        this.storeDir = config.getProperty("jira.store.dir", ".cache/tickets");
+        this.retryBackoffMillis = Math.max(0, config.getIntProperty("jira.fetch.backoff.millis", 500));
+        this.context = context;
+        HttpResponseCache cache = new HttpResponseCache(config);
+        this.pageSource = pageSource != null ? pageSource
+                : (url, revalidate) -> cache.openReader(url, revalidate, context.metrics());
+    }
 
-            parseIssues(jiraIssues, tickets, allReleases);
+    public List<JiraTicket> extractTicketList(ReleaseTimeline timeline) throws IOException, JSONException {
 
-            startPage += jiraIssues.length();
+        //release list is needed to map ticket dates to releases
 
-        } while (startPage < total);
+        Instant syncStart = Instant.now();
+        TicketStore ticketStore = new TicketStore(Path.of(storeDir), projName);
+
+        List<JiraIssueRecord> issues;
+        if (incrementalSync && ticketStore.getLastSync() != null) {
+            syncDelta(ticketStore);
+            issues = ticketStore.getIssues();
+        } else {
+            //full download, the store is refreshed so that a later incremental run can start from it;
+            //the issues are then read back from the store, so both modes list them in the same order
+            ticketStore.replaceAll(fetchIssues(String.format(FIXED_BUGS_JQL, projName), TICKET_FIELDS, MAX_RESULTS, false));
+            issues = ticketStore.getIssues();
+        }
+        ticketStore.save(syncStart);
 
-        Printer.println("Total tickets fetched: " + tickets.size() + " (out of " + total + " reported by JIRA)");
+        JiraResponseParser parser = new JiraResponseParser(timeline);
+        List<JiraTicket> tickets = new ArrayList<>();
+        for (JiraIssueRecord issue : issues) {
+            tickets.add(parser.toTicket(issue));
+        }
+
+        Printer.println("Total tickets: " + tickets.size());
         printTicketsToCSV(tickets);
         return tickets;
     }
 
-    public void printTicketsToCSV(List<JiraTicket> tickets){
-
-        String outname = projName + "Tickets.csv";
-        String dir = "src/main/outputFiles/" + projName;
-        new File(dir).mkdirs();
-
-        try (FileWriter fileWriter = new FileWriter(new File(dir, outname))) {
-            fileWriter.append("Index,IssueID,Name,InjectVersion,OpeningVersion,AffectedVersions,FixVersions\n");
-
-            for (int i = 0; i < tickets.size(); i++) {
-
-                JiraTicket ticket = tickets.get(i);
-
-                fileWriter.append(String.valueOf(i + 1));
-                fileWriter.append(",").append(ticket.getIssueId());
-                fileWriter.append(",").append(ticket.getName());
-
-                //handle possibly not knowing inject/opening version
-                fileWriter.append(",").append(ticket.getInjectVersion() != null ? ticket.getInjectVersion().getName() : "N/A");
-                fileWriter.append(",").append(ticket.getOpeningVersion() != null ? ticket.getOpeningVersion().getName() : "N/A");
-
-
-                // uses stream().map().collect() to create a valid string for the release list
-                String affectedVersionNames = ticket.getAffectedVersions().stream()
-                        .map(Release::getName)
-                        .collect(Collectors.joining(";"));
-                fileWriter.append(",\"").append(affectedVersionNames).append("\"");
-
-                String fixVersionNames = ticket.getFixVersions().stream()
-                        .map(Release::getName)
-                        .collect(Collectors.joining(";"));
-                fileWriter.append(",\"").append(fixVersionNames).append("\"\n");
+    private void syncDelta(TicketStore store) throws IOException {
+
+        //only issues updated since the last sync are downloaded, whatever their status is:
+        //a ticket that is no longer a fixed bug (reopened, resolution changed...) is removed from the store
+        Instant since = store.getLastSync().minus(Duration.ofHours(syncOverlapHours));
+        String deltaJql = String.format("project=%s AND issuetype=Bug AND updated>=\"%s\"", projName, JQL_DATE_FORMATTER.format(since));
+
+        int inserted = 0;
+        int updated = 0;
+        int removed = 0;
+        for (JiraIssueRecord issue : fetchIssues(deltaJql, TICKET_FIELDS, MAX_RESULTS, true)) {
+            boolean known = store.getKeys().contains(issue.key());
+            if (issue.isFixedBug()) {
+                if (store.upsert(issue)) {
+                    if (known) updated++; else inserted++;
+                }
+            } else if (store.remove(issue.key())) {
+                removed++;
             }
-        } catch (Exception e) {
-            Printer.println("Error in csv writer - JiraController");
         }
-    }
-
-    private void parseIssues(JSONArray issues, List<JiraTicket> tickets, List<Release> allReleases) {
-
-        //uses releases for the mapping logic
 
-        //needed to parse Jira's specific time format
-        DateTimeFormatter jiraDateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+        //deleted or moved issues never show up as updated: the list of keys tells us which ones are gone,
+        //and which ones we are missing
+        Set<String> liveKeys = new HashSet<>();
+        for (JiraIssueRecord issue : fetchIssues(String.format(FIXED_BUGS_JQL, projName), "key", MAX_KEY_RESULTS, true)) {
+            liveKeys.add(issue.key());
+        }
+        Set<String> storedKeys = store.getKeys();
+        for (String key : storedKeys) {
+            if (!liveKeys.contains(key) && store.remove(key)) removed++;
+        }
+        List<String> missingKeys = liveKeys.stream().filter(key -> !storedKeys.contains(key)).sorted().toList();
+        for (int i = 0; i < missingKeys.size(); i += KEYS_PER_QUERY) {
+            List<String> chunk = missingKeys.subList(i, Math.min(missingKeys.size(), i + KEYS_PER_QUERY));
+            String keysJql = "key in(" + String.join(",", chunk) + ")";
+            for (JiraIssueRecord issue : fetchIssues(keysJql, TICKET_FIELDS, MAX_RESULTS, true)) {
+                if (issue.isFixedBug() && store.upsert(issue)) inserted++;
+            }
+        }
 
+        Printer.println(String.format("Incremental sync since %s: %d new, %d updated, %d removed tickets.",
+                since, inserted, updated, removed));
+    }
 
-        for (int i = 0; i < issues.length(); i++) {
-            JSONObject issue = issues.getJSONObject(i);
-            JSONObject fields = issue.getJSONObject("fields");
+    // issues matching the jql, in the order of a sequential fetch of the pages
+    List<JiraIssueRecord> fetchIssues(String jql, String fields, int maxResults, boolean revalidate) throws IOException {
 
-            if (issue.has("key")) {
-                String issueId = issue.getString("id");
-                String name = issue.getString("key");
-                String resolution = fields.optString("resolution.name", "");
+        List<JiraIssueRecord> issues = new ArrayList<>();
 
+        //the first page tells us how many issues there are, the other pages are then fetched concurrently
+        SearchPage firstPage = fetchPagesConcurrently(jql, fields, maxResults, revalidate, List.of(0)).getFirst();
+        int total = firstPage.total();
+        issues.addAll(firstPage.issues());
 
-                List<Release> affectedReleases = parseReleasesFromJsonArray(fields.optJSONArray("versions"), allReleases);
-                List<Release> fixReleases = parseReleasesFromJsonArray(fields.optJSONArray("fixVersions"), allReleases);
+        //same offsets the sequential loop would have visited
+        int pageSize = firstPage.issues().size();
+        List<Integer> offsets = new ArrayList<>();
+        for (int startAt = pageSize; pageSize > 0 && startAt < total; startAt += pageSize) {
+            offsets.add(startAt);
+        }
 
-                Instant creationDate = Instant.from(jiraDateFormatter.parse(fields.getString("created")));
+        //pages are merged in offset order, so issues keep the order of a sequential fetch
+        for (SearchPage page : fetchPagesConcurrently(jql, fields, maxResults, revalidate, offsets)) {
+            issues.addAll(page.issues());
+        }
 
-                Release openingVersion = ReleaseController.findReleaseByDate(creationDate, allReleases);
+        Printer.println("Issues fetched: " + issues.size() + " (out of " + total + " reported by JIRA)");
+        return issues;
+    }
 
-                Release injectedVersion = null;
+    private List<SearchPage> fetchPagesConcurrently(String jql, String fields, int maxResults, boolean revalidate,
+                                                    List<Integer> offsets) throws IOException {
+
+        //one virtual thread per page, at most fetchConcurrency requests in flight at the same time
+        Semaphore permits = new Semaphore(fetchConcurrency);
+        List<Future<SearchPage>> futures = new ArrayList<>();
+        List<SearchPage> pages = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int offset : offsets) {
+                String url = searchUrl(jql, fields, offset, maxResults);
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return fetchPageWithRetry(url, revalidate);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
 
-                if (!affectedReleases.isEmpty()) {
-                    // IV is the first one of the affected versions if they are in order
-                    injectedVersion = affectedReleases.getFirst();
+            try {
+                for (Future<SearchPage> future : futures) {
+                    pages.add(future.get());
                 }
+            } catch (ExecutionException e) {
+                //a page failed even after its retries: no point in waiting for the others
+                executor.shutdownNow();
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException ioException) throw ioException;
+                if (cause instanceof JSONException jsonException) throw jsonException;
+                throw new IOException("Error while fetching JIRA tickets", cause);
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while fetching JIRA tickets");
+            }
+        }
+        return pages;
+    }
 
-                String comment = "";
-                if (fields.has("comment") && fields.getJSONObject("comment").has("comments")) {
-                    JSONArray comments = fields.getJSONObject("comment").getJSONArray("comments");
-                    if (!comments.isEmpty()) {
-                        comment = comments.getJSONObject(0).optString("body", ""); // Get first comment's body
-                    }
+    private SearchPage fetchPageWithRetry(String url, boolean revalidate) throws IOException, InterruptedException {
+
+        //a failed page is retried on its own, with a growing pause between attempts
+        for (int attempt = 0; ; attempt++) {
+            try (Reader reader = pageSource.open(url, revalidate)) {
+                Printer.println("Fetching URL: " + url);
+                //issues are collected per page, a page that fails halfway is parsed again from scratch
+                List<JiraIssueRecord> pageIssues = new ArrayList<>();
+                int total = JiraResponseParser.parseSearchPage(reader, pageIssues::add);
+                return new SearchPage(total, pageIssues);
+            } catch (IOException | UncheckedIOException | JSONException e) {
+                //the parser reports a connection dropped halfway through the page as an UncheckedIOException
+                if (attempt >= fetchRetries) {
+                    if (e instanceof UncheckedIOException unchecked) throw unchecked.getCause();
+                    throw e;
                 }
-                tickets.add(new JiraTicket(issueId, name, resolution, comment, openingVersion, injectedVersion, fixReleases, affectedReleases));
+                LOGGER.log(Level.WARNING, "Fetching {0} failed, retrying", url);
+                Thread.sleep(retryBackoffMillis << attempt);
             }
         }
     }
 
-    private List<Release> parseReleasesFromJsonArray(JSONArray versionsArray, List<Release> allReleases) {
-        //turns JSON Array of versions into a List<Release>
+    private String searchUrl(String jql, String fields, int startAt, int maxResults) {
+        return String.format("%s/rest/api/2/search?jql=%s&fields=%s&startAt=%d&maxResults=%d",
+                baseUrl, URLEncoder.encode(jql, StandardCharsets.UTF_8).replace("+", "%20"), fields, startAt, maxResults);
+    }
 
-        List<Release> foundReleases = new ArrayList<>();
-        if (versionsArray == null) return foundReleases;
+    public void printTicketsToCSV(List<JiraTicket> tickets){
 
-        for (int i = 0; i < versionsArray.length(); i++) {
-            JSONObject versionObj = versionsArray.getJSONObject(i);
-            String versionName = versionObj.optString("name");
+        String outname = projName + "Tickets.csv";
 
-            //finds object corresponding to name
-            allReleases.stream()
-                    .filter(r -> r.getName().equals(versionName))
-                    .findFirst()
-                    .ifPresent(foundReleases::add);
-        }
-        //sorting
-        foundReleases.sort(java.util.Comparator.comparing(Release::getDate));
-        return foundReleases;
-    }
+        try (CsvWriter csv = CsvWriter.open(context, outname)) {
+            csv.header("Index", "IssueID", "Name", "InjectVersion", "OpeningVersion", "AffectedVersions", "FixVersions");
+
+            for (int i = 0; i < tickets.size(); i++) {
 
-    private JSONObject readJsonFromUrl(String url) throws IOException, JSONException {
-        try {
-            return new JSONObject(readAll(new BufferedReader(new InputStreamReader(new URI(url).toURL().openStream(), StandardCharsets.UTF_8))));
-        } catch (URISyntaxException e) {
-            Printer.errorPrint("Invalid url: " + url);
-            return null;
+                JiraTicket ticket = tickets.get(i);
+
+                csv.field(i + 1L).field(ticket.getIssueId()).field(ticket.getName());
+
+                //handle possibly not knowing inject/opening version
+                csv.field(ticket.getInjectVersion() != null ? ticket.getInjectVersion().getName() : "N/A");
+                csv.field(ticket.getOpeningVersion() != null ? ticket.getOpeningVersion().getName() : "N/A");
+
+                // release lists are joined with ';'
+                csv.field(ticket.getAffectedVersions().stream().map(Release::getName).collect(Collectors.joining(";")));
+                csv.field(ticket.getFixVersions().stream().map(Release::getName).collect(Collectors.joining(";")));
+                csv.endRow();
+            }
+        } catch (IOException e) {
+            Printer.errorPrint("Error in csv writer - JiraController: " + e.getMessage());
         }
     }
 
-    private String readAll(Reader rd) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) sb.append((char) cp);
-        return sb.toString();
-    }
-}
\ No newline at end of file
+    private record SearchPage(int total, List<JiraIssueRecord> issues) {}
+}
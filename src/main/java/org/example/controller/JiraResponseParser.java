@@ -0,0 +1,301 @@
+package org.example.controller;
+
+import org.example.entity.JiraIssueRecord;
+import org.example.entity.JiraTicket;
+import org.example.entity.Release;
+import org.example.entity.ReleaseTimeline;
+import org.json.JSONException;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonException;
+import org.openqa.selenium.json.JsonInput;
+import org.openqa.selenium.json.JsonType;
+
+import java.io.Reader;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class JiraResponseParser {
+
+    /** Class responsibility: pull-based parsing of JIRA REST responses.
+     *  Reads straight from the response stream and hands out JiraTicket / Release objects one at a time,
+     *  without building the whole JSON document in memory first.
+     *  Field semantics are the same of the old JSONObject based parsing (parseIssues, parseReleasesFromJsonArray).
+     */
+
+    //needed to parse Jira's specific time format
+    private static final DateTimeFormatter JIRA_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+    private static final Json JSON = new Json();
+
+    private final ReleaseTimeline timeline;
+
+    public JiraResponseParser(ReleaseTimeline timeline) {
+        //releases are needed to map ticket dates and version names to releases
+        this.timeline = timeline;
+    }
+
+
+    public static int parseSearchPage(Reader reader, Consumer<JiraIssueRecord> sink) {
+
+        //parses a /rest/api/2/search page, every issue is passed to the sink as soon as it is read
+        //returns the "total" reported by JIRA
+
+        int total = 0;
+        try (JsonInput input = JSON.newInput(reader)) {
+            input.beginObject();
+            while (input.hasNext()) {
+                switch (input.nextName()) {
+                    case "total" -> total = input.nextNumber().intValue();
+                    case "issues" -> {
+                        if (skipIfNull(input)) break;
+                        input.beginArray();
+                        while (input.hasNext()) {
+                            JiraIssueRecord issue = parseIssue(input);
+                            if (issue != null) sink.accept(issue);
+                        }
+                        input.endArray();
+                    }
+                    default -> input.skipValue();
+                }
+            }
+            input.endObject();
+        } catch (JsonException e) {
+            throw new JSONException("Malformed JIRA search response", e);
+        }
+        return total;
+    }
+
+    public static void parseVersions(Reader reader, Consumer<Release> sink) {
+
+        //parses a /rest/api/2/project/<key> response, only versions with a release date are kept
+
+        try (JsonInput input = JSON.newInput(reader)) {
+            input.beginObject();
+            while (input.hasNext()) {
+                if (!input.nextName().equals("versions")) {
+                    input.skipValue();
+                    continue;
+                }
+                if (skipIfNull(input)) continue;
+                input.beginArray();
+                while (input.hasNext()) {
+                    Release release = parseVersion(input);
+                    if (release != null) sink.accept(release);
+                }
+                input.endArray();
+            }
+            input.endObject();
+        } catch (JsonException e) {
+            throw new JSONException("Malformed JIRA project response", e);
+        }
+    }
+
+
+    public JiraTicket toTicket(JiraIssueRecord issue) {
+
+        //maps the issue versions and creation date onto the release list
+        if (issue.issueId() == null || issue.created() == null) {
+            throw new JSONException("Incomplete JIRA issue " + issue.key());
+        }
+
+        List<Release> affectedReleases = toReleases(issue.versionNames());
+        List<Release> fixReleases = toReleases(issue.fixVersionNames());
+
+        Instant creationDate = Instant.from(JIRA_DATE_FORMATTER.parse(issue.created()));
+        Release openingVersion = timeline.findByDate(creationDate);
+
+        // IV is the first one of the affected versions if they are in order
+        Release injectedVersion = affectedReleases.isEmpty() ? null : affectedReleases.getFirst();
+
+        String resolution = issue.resolution() != null ? issue.resolution() : "";
+        return new JiraTicket(issue.issueId(), issue.key(), resolution, issue.comment(), timeline, openingVersion, injectedVersion, fixReleases, affectedReleases);
+    }
+
+
+    private static JiraIssueRecord parseIssue(JsonInput input) {
+
+        String issueId = null;
+        String key = null;
+        String created = null;
+        String status = null;
+        String resolution = null;
+        String comment = "";
+        List<String> affectedNames = new ArrayList<>();
+        List<String> fixNames = new ArrayList<>();
+
+        input.beginObject();
+        while (input.hasNext()) {
+            switch (input.nextName()) {
+                case "id" -> issueId = nextText(input);
+                case "key" -> key = nextText(input);
+                case "fields" -> {
+                    if (skipIfNull(input)) break;
+                    input.beginObject();
+                    while (input.hasNext()) {
+                        switch (input.nextName()) {
+                            case "created" -> created = nextText(input);
+                            case "status" -> status = readName(input);
+                            case "resolution" -> resolution = readName(input);
+                            case "versions" -> readVersionNames(input, affectedNames);
+                            case "fixVersions" -> readVersionNames(input, fixNames);
+                            case "comment" -> comment = readFirstCommentBody(input);
+                            default -> input.skipValue();
+                        }
+                    }
+                    input.endObject();
+                }
+                default -> input.skipValue();
+            }
+        }
+        input.endObject();
+
+        if (key == null) return null;
+        return new JiraIssueRecord(issueId, key, created, status, resolution, affectedNames, fixNames, comment);
+    }
+
+    private static Release parseVersion(JsonInput input) {
+
+        String id = "";
+        String name = "";
+        String releaseDate = null;
+
+        input.beginObject();
+        while (input.hasNext()) {
+            switch (input.nextName()) {
+                case "id" -> id = textOrDefault(nextText(input), "");
+                case "name" -> name = textOrDefault(nextText(input), "");
+                case "releaseDate" -> releaseDate = nextText(input);
+                default -> input.skipValue();
+            }
+        }
+        input.endObject();
+
+        if (releaseDate == null) return null; //ignores releases with missing dates
+
+        //need to use zone offset because of the difference between instant and localdate
+        Instant releaseInstant = LocalDate.parse(releaseDate).atStartOfDay().toInstant(ZoneOffset.UTC);
+        return new Release(id, name, releaseInstant);
+    }
+
+    private List<Release> toReleases(List<String> versionNames) {
+
+        //turns version names into a List<Release>, sorted by date
+        List<Release> foundReleases = new ArrayList<>();
+        for (String versionName : versionNames) {
+            //finds object corresponding to name
+            Release release = timeline.findByName(versionName);
+            if (release != null) foundReleases.add(release);
+        }
+        foundReleases.sort(Comparator.comparing(Release::getDate));
+        return foundReleases;
+    }
+
+    private static String readName(JsonInput input) {
+
+        //status and resolution are objects, only their name is kept
+        if (skipIfNull(input)) return null;
+
+        String name = null;
+        input.beginObject();
+        while (input.hasNext()) {
+            if (input.nextName().equals("name")) {
+                name = nextText(input);
+            } else {
+                input.skipValue();
+            }
+        }
+        input.endObject();
+        return name;
+    }
+
+    private static void readVersionNames(JsonInput input, List<String> names) {
+        if (skipIfNull(input)) return;
+
+        input.beginArray();
+        while (input.hasNext()) {
+            String versionName = "";
+            input.beginObject();
+            while (input.hasNext()) {
+                if (input.nextName().equals("name")) {
+                    versionName = textOrDefault(nextText(input), "");
+                } else {
+                    input.skipValue();
+                }
+            }
+            input.endObject();
+            names.add(versionName);
+        }
+        input.endArray();
+    }
+
+    private static String readFirstCommentBody(JsonInput input) {
+
+        //only the body of the first comment is kept, every other comment is skipped without being decoded
+        String body = "";
+        if (skipIfNull(input)) return body;
+
+        input.beginObject();
+        while (input.hasNext()) {
+            if (!input.nextName().equals("comments")) {
+                input.skipValue();
+                continue;
+            }
+            if (skipIfNull(input)) continue;
+            input.beginArray();
+            boolean first = true;
+            while (input.hasNext()) {
+                if (!first) {
+                    input.skipValue();
+                    continue;
+                }
+                first = false;
+                input.beginObject();
+                while (input.hasNext()) {
+                    if (input.nextName().equals("body")) {
+                        body = textOrDefault(nextText(input), "");
+                    } else {
+                        input.skipValue();
+                    }
+                }
+                input.endObject();
+            }
+            input.endArray();
+        }
+        input.endObject();
+        return body;
+    }
+
+    private static String nextText(JsonInput input) {
+        return switch (input.peek()) {
+            case STRING -> input.nextString();
+            case NUMBER -> input.nextNumber().toString();
+            case BOOLEAN -> String.valueOf(input.nextBoolean());
+            case NULL -> {
+                input.nextNull();
+                yield null;
+            }
+            default -> {
+                input.skipValue();
+                yield null;
+            }
+        };
+    }
+
+    private static boolean skipIfNull(JsonInput input) {
+        //null containers are consumed here, so the caller can treat them as missing
+        if (input.peek() == JsonType.NULL) {
+            input.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    private static String textOrDefault(String text, String defaultValue) {
+        return text != null ? text : defaultValue;
+    }
+}
@@ -1,18 +1,293 @@
 package org.example.controller;
 
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.*;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.ConditionalExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.SwitchExpr;
+import com.github.javaparser.ast.stmt.*;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.example.entity.MethodMetrics;
+import org.example.entity.Release;
+import org.example.util.ColumnarTable;
+import org.example.util.Printer;
+import org.example.util.RunContext;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 public class MethodExtractor {
 
-    //class responsibility: extract data and write it onto csv files for it to be later analyzed by classifier
+    //class responsibility: extract the method dataset for it to be later analyzed by classifier
+
+    //table columns: release ID, release name, path, method name, start/end line, <features>, bugginess [1/0]
+    //(DatasetExporter writes it as csv and ARFF)
+
+    //uses JavaParser Library to parse all methods in the desired project:
+    //  - every distinct blob is parsed once, a file unchanged since the previous release reuses its metrics
+    //  - blobs are parsed on a work-stealing pool, every worker thread keeps its own parser and ObjectReader
+    //  - all the metrics of a method come out of a single walk over its body
+    //  - rows are streamed release by release to the dictionary encoded ColumnarTable file exported by DatasetExporter,
+    //    only the parsed metrics of the current release are kept in memory; the table returned is that file mapped back
+    //  methods of anonymous and local classes are part of the method that declares them.
+
+    private static final Logger LOGGER = Logger.getLogger(MethodExtractor.class.getName());
+
+    // columns of the method dataset, in table order
+    public static final String RELEASE_ID = "ReleaseID";
+    public static final String RELEASE = "ReleaseName";
+    public static final String PATH = "Path";
+    public static final String METHOD = "Method";
+    public static final List<String> FEATURES = List.of("LOC", "Cyclomatic", "Parameters", "NestingDepth", "FanOut", "Statements");
+    public static final String BUGGY = "Buggy"; //1 = yes
+
+    private final String projName;
+    private final int parallelism;
+    private final ForkJoinPool sharedPool;
+    private final RunContext context;
+
+    public MethodExtractor() {
+        this(RunContext.standalone());
+    }
+
+    public MethodExtractor(RunContext context) {
+        this.projName = context.projectName();
+        this.parallelism = context.config().getIntProperty("methods.parallelism", Runtime.getRuntime().availableProcessors());
+        this.sharedPool = context.workers(); //batch runs: one pool for all the projects
+        this.context = context;
+    }
+
+
+    // columnar: file the ColumnarTable is written to (see DatasetExporter.columnarPath)
+    public ColumnarTable extractMethods(Map<Release, List<SourceInventory.Entry>> releaseFiles, Repository repository,
+                                       Map<Release, Set<String>> buggyMethods, Path columnar) throws IOException {
+
+        long start = System.nanoTime();
+
+        ForkJoinPool pool = sharedPool != null ? sharedPool : new ForkJoinPool(Math.max(1, parallelism));
+        Queue<Worker> workers = new ConcurrentLinkedQueue<>();
+        ThreadLocal<Worker> worker = ThreadLocal.withInitial(() -> {
+            Worker created = new Worker(repository.newObjectReader());
+            workers.add(created);
+            return created;
+        });
+
+        Map<ObjectId, List<MethodMetrics>> metricsByBlob = new ConcurrentHashMap<>();
+        AtomicInteger parseFailures = new AtomicInteger();
+        long rows = 0;
+        ColumnarTable methods;
+
+        try (ColumnarTable.Builder table = newTable(columnar)) {
+            for (Map.Entry<Release, List<SourceInventory.Entry>> release : releaseFiles.entrySet()) {
+                List<SourceInventory.Entry> files = release.getValue();
+
+                //blobs of this release not parsed yet, spread over the pool
+                List<ObjectId> newBlobs = files.stream().map(SourceInventory.Entry::blobId)
+                        .filter(id -> !metricsByBlob.containsKey(id)).distinct().toList();
+                pool.submit(() -> newBlobs.parallelStream().forEach(blobId -> {
+                    List<MethodMetrics> metrics = worker.get().analyze(blobId);
+                    if (metrics == null) parseFailures.incrementAndGet();
+                    metricsByBlob.put(blobId, metrics != null ? metrics : List.of());
+                })).get();
+
+                Set<String> buggy = buggyMethods.getOrDefault(release.getKey(), Set.of());
+                for (SourceInventory.Entry file : files) {
+                    for (MethodMetrics method : metricsByBlob.get(file.blobId())) {
+                        boolean isBuggy = buggy.contains(BugLabeler.methodKey(file.path(), method.name()));
+                        addRow(table, release.getKey(), file.path(), method, isBuggy);
+                        rows++;
+                    }
+                }
+
+                //only what the next release can reuse is kept
+                Set<ObjectId> current = new HashSet<>();
+                for (SourceInventory.Entry file : files) current.add(file.blobId());
+                metricsByBlob.keySet().retainAll(current);
+
+                LOGGER.log(Level.INFO, "{0}: {1} files, {2} parsed", new Object[]{release.getKey().getName(), files.size(), newBlobs.size()});
+            }
+            methods = table.build();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException unchecked ? unchecked.getCause() : e.getCause();
+            throw cause instanceof IOException io ? io : new IOException("Method extraction failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Method extraction interrupted", e);
+        } finally {
+            if (pool != sharedPool) pool.shutdownNow();
+            workers.forEach(w -> w.reader.close());
+        }
+
+        if (parseFailures.get() > 0) {
+            Printer.errorPrint(parseFailures.get() + " source files could not be parsed and were skipped.");
+        }
+        context.metrics().throughput("methods", rows, System.nanoTime() - start);
+        Printer.println(String.format("Method extraction complete: %d method rows saved to %s", rows, columnar));
+        return methods;
+    }
+
+    private ColumnarTable.Builder newTable(Path columnar) {
+        ColumnarTable.Builder table = ColumnarTable.builder(projName + "_Methods", columnar)
+                .stringColumn(RELEASE_ID)
+                .stringColumn(RELEASE)
+                .stringColumn(PATH)
+                .stringColumn(METHOD)
+                .intColumn("StartLine")
+                .intColumn("EndLine");
+        FEATURES.forEach(table::intColumn);
+        return table.intColumn(BUGGY);
+    }
+
+    private static void addRow(ColumnarTable.Builder table, Release release, String path, MethodMetrics method, boolean buggy) {
+        //same order as newTable()
+        table.set(0, release.getId())
+                .set(1, release.getName())
+                .set(2, path)
+                .set(3, method.name())
+                .set(4, method.startLine())
+                .set(5, method.endLine())
+                .set(6, method.loc())
+                .set(7, method.cyclomatic())
+                .set(8, method.parameters())
+                .set(9, method.maxNesting())
+                .set(10, method.fanOut())
+                .set(11, method.statements())
+                .set(12, buggy ? 1 : 0)
+                .endRow();
+    }
+
+    // per-thread state: parsers are not thread safe and are costly to build, ObjectReaders are not thread safe either
+    private static final class Worker {
+        private final JavaParser parser = newParser();
+        private final ObjectReader reader;
+
+        Worker(ObjectReader reader) {
+            this.reader = reader;
+        }
+
+        // null when the file does not parse
+        List<MethodMetrics> analyze(ObjectId blobId) {
+            try {
+                return parseMethods(parser, reader, blobId);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    static JavaParser newParser() {
+        ParserConfiguration configuration = new ParserConfiguration()
+                .setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_21) //RAW does not know the contextual keywords (yield...)
+                .setAttributeComments(false);
+        return new JavaParser(configuration);
+    }
 
-    //csv format: project name, method name, release ID, <features> (about 10), bugginess [yes/no]
+    // methods of a source file, in declaration order; null when the file does not parse
+    static List<MethodMetrics> parseMethods(JavaParser parser, ObjectReader reader, ObjectId blobId) throws IOException {
+        ParseResult<CompilationUnit> result;
+        try (InputStream in = reader.open(blobId, Constants.OBJ_BLOB).openStream()) {
+            result = parser.parse(in, StandardCharsets.UTF_8);
+        }
+        if (result.getResult().isEmpty() || !result.isSuccessful()) {
+            return null;
+        }
 
-    //uses JavaParser Library to parse all methods in the desired project,
+        List<MethodMetrics> methods = new ArrayList<>();
+        for (TypeDeclaration<?> type : result.getResult().get().getTypes()) {
+            collectMethods(type, type.getNameAsString(), methods);
+        }
+        return methods;
+    }
+
+    private static void collectMethods(TypeDeclaration<?> type, String typeName, List<MethodMetrics> methods) {
+        for (BodyDeclaration<?> member : type.getMembers()) {
+            if (member instanceof CallableDeclaration<?> callable) {
+                methods.add(measure(callable, typeName));
+            } else if (member instanceof TypeDeclaration<?> nested) {
+                collectMethods(nested, typeName + "." + nested.getNameAsString(), methods);
+            }
+        }
+        if (type instanceof EnumDeclaration enumDeclaration) {
+            //constants with a body: their methods belong to the enum
+            for (EnumConstantDeclaration constant : enumDeclaration.getEntries()) {
+                for (BodyDeclaration<?> member : constant.getClassBody()) {
+                    if (member instanceof CallableDeclaration<?> callable) {
+                        methods.add(measure(callable, typeName + "." + constant.getNameAsString()));
+                    }
+                }
+            }
+        }
+    }
 
 
-    //todo oppure meglio ck di javaparser? Mi dovrebbe semplificare il lavoro
+    private static MethodMetrics measure(CallableDeclaration<?> callable, String typeName) {
+        Counters counters = new Counters();
+        Optional<BlockStmt> body = callable instanceof MethodDeclaration method ? method.getBody()
+                : Optional.of(((ConstructorDeclaration) callable).getBody());
+        body.ifPresent(block -> walk(block, counters, 0));
 
-    public static void extractMethods() {
+        int begin = callable.getBegin().map(p -> p.line).orElse(0);
+        int end = callable.getEnd().map(p -> p.line).orElse(begin);
+        return new MethodMetrics(typeName + "." + callable.getSignature().asString(), begin, end,
+                1 + counters.decisions, callable.getParameters().size(), counters.maxNesting,
+                counters.calls.size(), counters.statements);
+    }
 
+    private static final class Counters {
+        int decisions;
+        int statements;
+        int maxNesting;
+        final Set<String> calls = new HashSet<>();
     }
 
+    // one walk over the body: decisions, statements, nesting and calls are all counted on the way down
+    private static void walk(Node node, Counters counters, int depth) {
+
+        if (node instanceof Statement && !(node instanceof BlockStmt)) counters.statements++;
+
+        if (node instanceof IfStmt || node instanceof ForStmt || node instanceof ForEachStmt
+                || node instanceof WhileStmt || node instanceof DoStmt || node instanceof CatchClause
+                || node instanceof ConditionalExpr) {
+            counters.decisions++;
+        } else if (node instanceof SwitchEntry entry && !entry.getLabels().isEmpty()) {
+            counters.decisions++; //every case, not the default
+        } else if (node instanceof BinaryExpr binary
+                && (binary.getOperator() == BinaryExpr.Operator.AND || binary.getOperator() == BinaryExpr.Operator.OR)) {
+            counters.decisions++;
+        } else if (node instanceof MethodCallExpr call) {
+            counters.calls.add(call.getNameAsString() + "/" + call.getArguments().size());
+        }
+
+        int childDepth = depth;
+        if (isNestingConstruct(node)) {
+            childDepth = depth + 1;
+            counters.maxNesting = Math.max(counters.maxNesting, childDepth);
+        }
+
+        for (Node child : node.getChildNodes()) {
+            //"else if" stays at the depth of its if
+            boolean elseIf = node instanceof IfStmt ifStmt && child instanceof IfStmt && ifStmt.getElseStmt().orElse(null) == child;
+            walk(child, counters, elseIf ? depth : childDepth);
+        }
+    }
+
+    private static boolean isNestingConstruct(Node node) {
+        return node instanceof IfStmt || node instanceof ForStmt || node instanceof ForEachStmt
+                || node instanceof WhileStmt || node instanceof DoStmt || node instanceof SwitchStmt
+                || node instanceof SwitchExpr || node instanceof TryStmt || node instanceof SynchronizedStmt;
+    }
 }
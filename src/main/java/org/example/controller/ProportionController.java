@@ -2,13 +2,18 @@ package org.example.controller;
 
 import org.example.entity.JiraTicket;
 import org.example.entity.Release;
+import org.example.entity.ReleaseTimeline;
+import org.example.util.ConfigurationManager;
+import org.example.util.OrderStatistics;
+import org.example.util.RunContext;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,156 +21,279 @@ public class ProportionController {
 
     /** Class responsibility: apply Proportion method to estimate missing inject Version of a bug.
      *      Proportion method: IV = FV − (FV − OV) * p
-     *      where p = (FV − IV) / (FV − OV), computed as an average on bugs with a known inject version.
+     *      where p = (FV − IV) / (FV − OV), aggregated over bugs with a known inject version.
      *
      * openingVersion (OV): la capiamo dalla data di crezione del ticket associandola alla release più vicina
      * injectedVersion (IV): JIRA non fornisce questo dato direttamente. Se un bug ha una sola affectedVersion, quella è la nostra IV "nota".
      * Se ne ha molte, la più vecchia è la nostra IV. Se non ne ha, l'IV è sconosciuta e va stimata
      *
+     * p comes in three variants (proportion.method), each one giving a p for every release; a ticket uses the p of its OV:
+     *  - global: one p from all the tickets with a known IV
+     *  - increment: p of release r from the tickets fixed before r (FV earlier than r)
+     *  - moving_window: like increment, but only the last proportion.window.percent % of those tickets, in fix order;
+     *    the window is a percentage of all the tickets with a known IV, or, for the p known at a release
+     *    (computeVisibleP), of the ones fixed before it
+     * p aggregates the ratios with the median (default) or the mean (proportion.statistic). Increment and moving window
+     * feed the tickets to an OrderStatistics in fix order, so the p of every release is a O(log n) query.
+     * A p computed from fewer than proportion.coldstart.min tickets (default 1) is replaced by the fallback p:
+     * the cold start p of the run context (median p of the other projects of a batch), or DEFAULT_P.
      */
 
+    public enum Method { GLOBAL, INCREMENT, MOVING_WINDOW }
 
     private static final Logger LOGGER = Logger.getLogger(ProportionController.class.getName());
+    private static final double DEFAULT_P = 0.5;
 
+    private final Method method;
+    private final double windowPercent;
+    private final boolean mean;
+    private final int minTickets;
+    private final double fallbackP;
 
-    public void applyProportion(List<JiraTicket> tickets, List<Release> allReleases) {
+    public ProportionController() {
+        this(RunContext.standalone());
+    }
 
-        LOGGER.log(Level.INFO, "Starting Proportion technique application...");
+    public ProportionController(RunContext context) {
+        ConfigurationManager config = context.config();
+        this.method = Method.valueOf(config.getProperty("proportion.method", "global").trim().toUpperCase(Locale.ROOT));
+        this.windowPercent = Double.parseDouble(config.getProperty("proportion.window.percent", "1"));
+        this.mean = config.getProperty("proportion.statistic", "median").trim().equalsIgnoreCase("mean");
+        this.minTickets = Math.max(1, config.getIntProperty("proportion.coldstart.min", 1));
+        this.fallbackP = context.coldStartP().orElse(DEFAULT_P);
+    }
+
+    public ProportionController(Method method, double windowPercent, boolean mean) {
+        this.method = method;
+        this.windowPercent = windowPercent;
+        this.mean = mean;
+        this.minTickets = 1;
+        this.fallbackP = DEFAULT_P;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
 
+    // everything that changes the p values, for caches
+    public String describe() {
+        return method + (method == Method.MOVING_WINDOW ? "(" + windowPercent + "%)" : "") + (mean ? "/mean" : "/median")
+                + "/min " + minTickets + "/fallback " + fallbackP;
+    }
+
+    // tickets with a known IV that a p can be computed from
+    public int countKnownTickets(List<JiraTicket> tickets) {
+        return (int) tickets.stream().mapToDouble(ProportionController::ratio).filter(p -> !Double.isNaN(p)).count();
+    }
+
+
+    public void applyProportion(List<JiraTicket> tickets, ReleaseTimeline timeline) {
         // compute p from tickets that have a known IV
-        double pValue = computeP(tickets);
-        LOGGER.log(Level.INFO, "Calculated global proportion value (p): {0}", pValue);
+        applyProportion(tickets, timeline, computeReleaseP(tickets, timeline));
+    }
 
-        // estimate missing IV for the other tickets
+    // the same p for every ticket (walk-forward, called at every iteration: it only logs at FINE)
+    public void applyProportion(List<JiraTicket> tickets, ReleaseTimeline timeline, double pValue) {
+        LOGGER.log(Level.FINE, "Applying Proportion with p = {0} to {1} tickets", new Object[]{pValue, tickets.size()});
         for (JiraTicket ticket : tickets) {
+            apply(ticket, pValue, timeline);
+        }
+    }
 
-            if (ticket.getInjectVersion() == null) {
+    // pByRelease: p of every release, by chronological ordinal
+    public void applyProportion(List<JiraTicket> tickets, ReleaseTimeline timeline, double[] pByRelease) {
 
-                //just to make sure they're actually sorted
-                if (ticket.getFixVersions() != null) {
-                    ticket.getFixVersions().sort(Comparator.comparing(Release::getDate));
-                }
+        LOGGER.log(Level.INFO, "Starting Proportion technique application...");
+        LOGGER.log(Level.INFO, "Proportion values (p) by release: {0}", Arrays.toString(pByRelease));
 
-                Release estimatedIV = estimateInjectedVersion(ticket, pValue, allReleases);
+        // a ticket uses the p of its OV (a ticket without an OV cannot be estimated, whatever the p)
+        for (JiraTicket ticket : tickets) {
+            int ov = ticket.openingOrdinal();
+            apply(ticket, ov >= 0 ? pByRelease[ov] : Double.NaN, timeline);
+        }
+        LOGGER.log(Level.INFO, "Finished estimating missing Injected Versions and populating affected versions.");
+    }
+
+    // estimates the missing IV of a ticket, then sets its affected versions: the ordinal range of the releases dated in [IV, FV)
+    private void apply(JiraTicket ticket, double pValue, ReleaseTimeline timeline) {
+        if (ticket.injectOrdinal() < 0) {
 
-                // estimate injecting version of the bug cannot come later than opening version of the ticket!
-                if (estimatedIV != null && estimatedIV.getDate().isBefore(ticket.getOpeningVersion().getDate())) {
-                    ticket.setInjectVersion(estimatedIV);
+            //just to make sure they're actually sorted
+            ticket.sortFixVersionsByDate();
 
-                } else {
-                    LOGGER.log(Level.WARNING, "Could not estimate IV for ticket {0}. Defaulting IV to OV.", ticket.getName());
-                    ticket.setInjectVersion(ticket.getOpeningVersion());
-                }
+            int injectOrdinal = estimateInjectOrdinal(ticket, pValue, timeline);
+            if (injectOrdinal == ticket.openingOrdinal()) {
+                LOGGER.log(Level.WARNING, "Could not estimate IV for ticket {0}. Defaulting IV to OV.", ticket.getName());
             }
+            ticket.setInjectVersion(injectOrdinal);
         }
-        LOGGER.log(Level.INFO, "Finished estimating missing Injected Versions.");
+        determineAffectedVersions(ticket, timeline);
+    }
 
-        // populate the 'affectedVersions' list for every ticket based on the [IV, FV) range
-        for (JiraTicket ticket : tickets) {
-            determineAffectedVersions(ticket, allReleases);
+    // the IV applyProportion gives a ticket without a reported one: the estimate with p, or its OV when there is
+    // no estimate before the OV. Whatever IV the ticket holds is ignored
+    int estimateInjectOrdinal(JiraTicket ticket, double pValue, ReleaseTimeline timeline) {
+        int estimatedIV = estimateInjectedVersion(ticket, pValue, timeline);
+
+        // estimate injecting version of the bug cannot come later than opening version of the ticket!
+        if (estimatedIV >= 0 && timeline.dateOf(estimatedIV).isBefore(timeline.dateOf(ticket.openingOrdinal()))) {
+            return estimatedIV;
         }
-        LOGGER.log(Level.INFO, "Finished populating affected versions for all tickets.");
+        return ticket.openingOrdinal();
     }
 
 
-    private double computeP(List<JiraTicket> tickets) {
+    public double computeP(List<JiraTicket> tickets) {
 
-        //calculates the proportion value 'p' by analyzing tickets where IV, OV, and FV are known
+        //calculates the global proportion value 'p' by analyzing tickets where IV, OV, and FV are known
 
-        List<Double> proportions = new ArrayList<>();
+        double[] ratios = tickets.stream().mapToDouble(ProportionController::ratio).filter(p -> !Double.isNaN(p)).toArray();
 
-        for (JiraTicket ticket : tickets) {
-            Release iv = ticket.getInjectVersion();
-            Release ov = ticket.getOpeningVersion();
+        if (ratios.length < minTickets) {
+            LOGGER.log(Level.WARNING, "Only {0} tickets with a known IV. Using fallback p = {1}.", new Object[]{ratios.length, fallbackP});
+            return fallbackP; // Default (or cold start) value if not enough data is available
+        }
 
-            // we need IV, OV, and at least one FV to calculate p.
-            if (iv != null && ov != null && !ticket.getFixVersions().isEmpty()) {
+        OrderStatistics statistics = new OrderStatistics(ratios);
+        for (double ratio : ratios) statistics.add(ratio);
+        return aggregate(statistics);
+    }
 
-                // for FV, we take the last fix version, assuming it's the final one (we sorted beforehand in applyProportion)
-                Release fv = ticket.getFixVersions().getLast();
+    public double[] computeReleaseP(List<JiraTicket> tickets, ReleaseTimeline timeline) {
 
-                Duration fvToOv = Duration.between(ov.getDate(), fv.getDate());
-                Duration ivToFv = Duration.between(iv.getDate(), fv.getDate());
+        //p of every release (by chronological ordinal) for the configured method
 
-                if (!fvToOv.isZero() && !fvToOv.isNegative() && !ivToFv.isNegative()) {
-                    double p = (double) ivToFv.getSeconds() / fvToOv.getSeconds();
-                    proportions.add(p);
-                }
-            }
+        if (method == Method.GLOBAL) {
+            double[] pByRelease = new double[timeline.size()];
+            Arrays.fill(pByRelease, computeP(tickets));
+            return pByRelease;
         }
+        return historyP(tickets, timeline, false);
+    }
 
-        if (proportions.isEmpty()) {
-            LOGGER.log(Level.WARNING, "Could not calculate any proportion value. Using default of 0.5.");
-            return 0.5; // Default value if no data is available
-        }
+    public double[] computeVisibleP(List<JiraTicket> tickets, ReleaseTimeline timeline) {
+
+        //p known at every release: only tickets fixed before the release count (walk-forward evaluation).
+        //increment and moving window already work this way, global would look at tickets fixed later,
+        //so it grows release by release like increment. The moving window is sized from those tickets too
+
+        return historyP(tickets, timeline, true);
+    }
 
-        // todo return the median value, which is more robust to outliers than the mean? or mean?
-        Collections.sort(proportions);
-        int middle = proportions.size() / 2;
-        if (proportions.size() % 2 == 1) {
-            return proportions.get(middle);
-        } else {
-            return (proportions.get(middle - 1) + proportions.get(middle)) / 2.0;
+    // visibleWindow: the moving window is a percentage of the tickets fixed before each release, not of all of them
+    private double[] historyP(List<JiraTicket> tickets, ReleaseTimeline timeline, boolean visibleWindow) {
+
+        double[] pByRelease = new double[timeline.size()];
+
+        // tickets with a known ratio, in fix order (ordinal of the FV; ties keep the ticket order)
+        List<JiraTicket> known = new ArrayList<>();
+        for (JiraTicket ticket : tickets) {
+            if (!Double.isNaN(ratio(ticket))) known.add(ticket);
         }
+        known.sort(Comparator.comparingInt(JiraTicket::fixOrdinal));
+        double[] ratios = known.stream().mapToDouble(ProportionController::ratio).toArray();
+
+        OrderStatistics statistics = new OrderStatistics(ratios);
+        int oldest = 0;
+        int next = 0;
+        int defaults = 0;
+        for (int release = 0; release < pByRelease.length; release++) {
+            //tickets fixed before this release enter the history, the oldest leave the window
+            while (next < known.size() && known.get(next).fixOrdinal() < release) {
+                statistics.add(ratios[next]);
+                next++;
+            }
+            //the window never grows faster than the history, so no ticket that left it comes back
+            int window = window(visibleWindow ? next : known.size());
+            while (next - oldest > window) statistics.remove(ratios[oldest++]);
+            if (statistics.size() < minTickets) {
+                pByRelease[release] = fallbackP;
+                defaults++;
+            } else {
+                pByRelease[release] = aggregate(statistics);
+            }
+        }
+
+        LOGGER.log(Level.INFO, "{0}: {1} tickets with a known IV, {2} releases without enough history use p = {3}",
+                new Object[]{describe(), known.size(), defaults, fallbackP});
+        return pByRelease;
+    }
+
+    // tickets in the moving window out of a history of 'tickets'
+    private int window(int tickets) {
+        return method == Method.MOVING_WINDOW ? Math.max(1, (int) Math.round(tickets * windowPercent / 100.0)) : Integer.MAX_VALUE;
+    }
+
+    // (FV - IV) / (FV - OV) for a ticket with a known IV, NaN when it cannot be computed
+    private static double ratio(JiraTicket ticket) {
+        int iv = ticket.injectOrdinal();
+        int ov = ticket.openingOrdinal();
+
+        // we need IV, OV, and at least one FV to calculate p.
+        if (iv < 0 || ov < 0 || !ticket.hasFixVersion()) return Double.NaN;
+
+        // for FV, we take the last fix version, assuming it's the final one (we sorted beforehand in applyProportion)
+        int fv = ticket.fixOrdinal();
+
+        ReleaseTimeline timeline = ticket.getTimeline();
+        Duration fvToOv = Duration.between(timeline.dateOf(ov), timeline.dateOf(fv));
+        Duration ivToFv = Duration.between(timeline.dateOf(iv), timeline.dateOf(fv));
+
+        if (fvToOv.isZero() || fvToOv.isNegative() || ivToFv.isNegative()) return Double.NaN;
+        return (double) ivToFv.getSeconds() / fvToOv.getSeconds();
+    }
+
+    private double aggregate(OrderStatistics statistics) {
+        // the median is the default: a few tickets with a huge ratio move the mean a lot
+        return mean ? statistics.mean() : statistics.median();
     }
 
 
-    private Release estimateInjectedVersion(JiraTicket ticket, double pValue, List<Release> allReleases) {
+    private int estimateInjectedVersion(JiraTicket ticket, double pValue, ReleaseTimeline timeline) {
 
         /*
          * Estimates the injected version for a ticket using the Proportion method
-         * uses the sorted list of all releases, needed to map the estimated date back to a Release.
-         * returns the estimated injected Release, or null if it cannot be estimated.
+         * uses the release timeline, needed to map the estimated date back to a Release.
+         * returns the ordinal of the estimated injected Release, or -1 if it cannot be estimated.
          */
 
-        Release ov = ticket.getOpeningVersion();
+        int ov = ticket.openingOrdinal();
 
-        if (ov == null || ticket.getFixVersions().isEmpty()) {
-            return null; // Cannot estimate without OV and FV.
+        if (ov < 0 || !ticket.hasFixVersion()) {
+            return -1; // Cannot estimate without OV and FV.
         }
-        Release fv = ticket.getFixVersions().getLast();
-
-        Duration fvToOv = Duration.between(ov.getDate(), fv.getDate());
+        Instant ovDate = timeline.dateOf(ov);
+        Instant fvDate = timeline.dateOf(ticket.fixOrdinal());
+        Duration fvToOv = Duration.between(ovDate, fvDate);
 
         // Calculate the duration to subtract from FV's date.
         long secondsToSubtract = (long) (fvToOv.getSeconds() * pValue);
 
         // The estimated date of injection.
-        Instant estimatedIVDate = fv.getDate().minusSeconds(secondsToSubtract);
+        Instant estimatedIVDate = fvDate.minusSeconds(secondsToSubtract);
 
         // Find the release that was active at the estimated injection date
-        return ReleaseController.findReleaseByDate(estimatedIVDate, allReleases);
+        Release estimated = timeline.findByDate(estimatedIVDate);
+        return estimated == null ? -1 : timeline.ordinalOf(estimated);
     }
 
 
-    private void determineAffectedVersions(JiraTicket ticket, List<Release> releases) {
+    void determineAffectedVersions(JiraTicket ticket, ReleaseTimeline timeline) {
 
-        // Populates the affected versions list for a ticket. A release is considered affected
-        // if its date falls within the [IV, FV) interval.
+        // A release is considered affected if its date falls within the [IV, FV) interval:
+        // releases are sorted by date, so they are the ordinals from the first one dated IV or later
+        // up to the first one dated FV or later.
 
-        Release iv = ticket.getInjectVersion();
+        int iv = ticket.injectOrdinal();
 
-        if (iv == null || ticket.getFixVersions().isEmpty()) {
+        if (iv < 0 || !ticket.hasFixVersion()) {
             return; // Cannot determine the range
         }
 
-        Release fv = ticket.getFixVersions().getLast();
-
-        Instant ivDate = iv.getDate();
-        Instant fvDate = fv.getDate();
-
-        List<Release> affected = new ArrayList<>();
-
-        for (Release release : releases) {
-            Instant releaseDate = release.getDate();
-
-            // A release is affected if: releaseDate >= ivDate AND releaseDate < fvDate
-            if (!releaseDate.isBefore(ivDate) && releaseDate.isBefore(fvDate)) {
-                affected.add(release);
-            }
-        }
+        int from = timeline.firstOnOrAfter(timeline.dateOf(iv));
+        int to = timeline.firstOnOrAfter(timeline.dateOf(ticket.fixOrdinal()));
 
-        // update internal list of affected versions with the one we just computed
-        ticket.setAffectVersions(affected);
+        // update the affected versions of the ticket with the range we just computed
+        ticket.setAffectedRange(from, to);
     }
-}
\ No newline at end of file
+}
@@ -2,15 +2,12 @@ package org.example.controller;
 
 import org.example.entity.Release;
 import org.example.util.ConfigurationManager;
+import org.example.util.CsvWriter;
+import org.example.util.HttpResponseCache;
 import org.example.util.Printer;
-import org.json.JSONArray;
+import org.example.util.RunContext;
 import org.json.JSONException;
-import org.json.JSONObject;
 import java.io.*;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.nio.charset.StandardCharsets;
-import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
@@ -32,11 +29,22 @@ public class ReleaseController {
     private HashMap<LocalDateTime, String> releaseID;
     private ArrayList<LocalDateTime> releases;
     private List<Release> releaseList;
-    private static final Logger LOGGER = Logger.getLogger(ProportionController.class.getName());
+    private static final Logger LOGGER = Logger.getLogger(ReleaseController.class.getName());
+    private final ConfigurationManager config;
+    private final RunContext context;
+
+    public ReleaseController() {
+        this(RunContext.standalone());
+    }
+
+    public ReleaseController(RunContext context) {
+        this.config = context.config();
+        this.context = context;
+    }
 
     public List<Release> extractReleases() throws IOException, JSONException {
 
-        String projName = ConfigurationManager.getInstance().getProperty("project.name");
+        String projName = config.getProperty("project.name");
 
         //Fills the arraylist with releases dates and orders them
         //Ignores releases with missing dates
@@ -48,45 +56,27 @@ public class ReleaseController {
         //todo eliminare queste tre liste inutili per sostituirle definitivamente con la lista di release releaselist
 
         int i;
-        String url = "https://issues.apache.org/jira/rest/api/2/project/" + projName;
-
-        JSONObject json = readJsonFromUrl(url);
-        JSONArray versions;
-        versions = json.getJSONArray("versions");
-
-        for (i = 0; i < versions.length(); i++ ) {
-            String name = "";
-            String id = "";
-            LocalDate date;
-
-            if(versions.getJSONObject(i).has("releaseDate")) {
-                if (versions.getJSONObject(i).has("name"))
-                    name = versions.getJSONObject(i).get("name").toString();
-                if (versions.getJSONObject(i).has("id"))
-                    id = versions.getJSONObject(i).get("id").toString();
-                date = LocalDate.parse(versions.getJSONObject(i).get("releaseDate").toString());
-
-                //need to use zone offset because of the difference between instant and localdate
-                Instant releaseInstant = date.atStartOfDay().toInstant(ZoneOffset.UTC);
-
-
-                addRelease(versions.getJSONObject(i).get("releaseDate").toString(),
-                        name,id);
-
-                releaseList.add(new Release(id, name, releaseInstant));
-            }
+        String baseUrl = config.getProperty("jira.baseurl", "https://issues.apache.org/jira");
+        String url = baseUrl + "/rest/api/2/project/" + projName;
+
+        //versions are streamed out of the response, releases with missing dates are already skipped by the parser
+        try (Reader reader = new HttpResponseCache(config).openReader(url, false, context.metrics())) {
+            JiraResponseParser.parseVersions(reader, release -> {
+                addRelease(LocalDate.ofInstant(release.getDate(), ZoneOffset.UTC).toString(),
+                        release.getName(), release.getId());
+                releaseList.add(release);
+            });
         }
 
         // order releases by date
         releases.sort(Comparator.naturalOrder());
 
 
-        //output file and its directory
+        //output file
         String outname = projName + "VersionInfo.csv";
-        String dir = "src/main/outputFiles/" + projName;
 
 
-        try (FileWriter fileWriter = new FileWriter(new File(dir, outname))) {
+        try (CsvWriter csv = CsvWriter.open(context, outname)) {
 
             int releasesToKeep = (int) Math.round(releases.size() * 0.34);
 
@@ -99,20 +89,15 @@ public class ReleaseController {
             Printer.println("Keeping the first " + releasesToKeep + " releases (34%).");
 
             //csv file columns
-            fileWriter.append("Index,Version ID,Version Name,Date");
-            fileWriter.append("\n");
+            csv.header("Index", "Version ID", "Version Name", "Date");
 
             //do not consider the last 66% of releases
             for ( i = 0; i < releasesToKeep; i++) {
-                int index = i + 1;
-                fileWriter.append(Integer.toString(index));
-                fileWriter.append(",");
-                fileWriter.append(releaseID.get(releases.get(i)));
-                fileWriter.append(",");
-                fileWriter.append(releaseNames.get(releases.get(i)));
-                fileWriter.append(",");
-                fileWriter.append(releases.get(i).toString());
-                fileWriter.append("\n");
+                csv.field(i + 1L)
+                        .field(releaseID.get(releases.get(i)))
+                        .field(releaseNames.get(releases.get(i)))
+                        .field(releases.get(i).toString())
+                        .endRow();
             }
 
         } catch (Exception e) {
@@ -126,47 +111,10 @@ public class ReleaseController {
     public void addRelease(String strDate, String name, String id) {
         LocalDate date = LocalDate.parse(strDate);
         LocalDateTime dateTime = date.atStartOfDay();
-        if (!releases.contains(dateTime))
+        if (!releaseNames.containsKey(dateTime))
             releases.add(dateTime);
         releaseNames.put(dateTime, name);
         releaseID.put(dateTime, id);
     }
 
-
-    public JSONObject readJsonFromUrl(String url) throws IOException, JSONException {
-        JSONObject jsonObj = null;
-        try (InputStream is = new URI(url).toURL().openStream()) {
-            BufferedReader rd = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-            String jsonText = readAll(rd);
-            jsonObj = new JSONObject(jsonText);
-        } catch (URISyntaxException e) {
-            Printer.errorPrint("Invalid url.");
-        }
-        return jsonObj;
-    }
-
-    private String readAll(Reader rd) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-            sb.append((char) cp);
-        }
-        return sb.toString();
-    }
-
-
-    public static Release findReleaseByDate(Instant date, List<Release> allReleases) {
-         //Finds the release that was active at a specific date.
-         // Assumes releases are sorted chronologically.
-
-        Release foundRelease = null;
-        for (Release release : allReleases) {
-            if (release.getDate().isAfter(date)) {
-                break; // we've gone past the date, the previous one was the correct one
-            }
-            foundRelease = release;
-        }
-        return foundRelease;
-    }
-
-}
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+package org.example.controller;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReleaseSnapshot implements AutoCloseable {
+
+    /** Class responsibility: read the .java files of one release straight from the Git object database.
+     *  The working tree is never touched: files are listed by walking the tree of the release commit
+     *  and their content is streamed from the blobs.
+     *  Every snapshot has its own ObjectReader, so several releases can be read at the same time from one Repository;
+     *  a single snapshot must be used by one thread at a time.
+     */
+
+    public record SourceFile(String path, ObjectId blobId) {}
+
+    private final String name;
+    private final RevTree tree;
+    private final ObjectReader reader;
+
+    ReleaseSnapshot(Repository repository, String name, RevTree tree) {
+        this.name = name;
+        this.tree = tree;
+        this.reader = repository.newObjectReader();
+    }
+
+
+    public String getName() { return name; }
+
+    public ObjectId getTreeId() { return tree.getId(); }
+
+    public List<SourceFile> listJavaFiles() throws IOException {
+        List<SourceFile> files = new ArrayList<>();
+        try (TreeWalk treeWalk = new TreeWalk(reader)) {
+            treeWalk.addTree(tree);
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(PathSuffixFilter.create(".java"));
+            while (treeWalk.next()) {
+                files.add(new SourceFile(treeWalk.getPathString(), treeWalk.getObjectId(0)));
+            }
+        }
+        return files;
+    }
+
+    // .java files that differ from another tree (e.g. the previous release); blobId is null for a file deleted since then.
+    // Subtrees with the same id in both trees are skipped without being read.
+    public List<SourceFile> listChangedJavaFiles(ObjectId baseTree) throws IOException {
+        List<SourceFile> files = new ArrayList<>();
+        try (TreeWalk treeWalk = new TreeWalk(reader)) {
+            treeWalk.addTree(baseTree);
+            treeWalk.addTree(tree);
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(AndTreeFilter.create(TreeFilter.ANY_DIFF, PathSuffixFilter.create(".java")));
+            while (treeWalk.next()) {
+                ObjectId blobId = treeWalk.getFileMode(1) == FileMode.MISSING ? null : treeWalk.getObjectId(1);
+                files.add(new SourceFile(treeWalk.getPathString(), blobId));
+            }
+        }
+        return files;
+    }
+
+    // content of a file, streamed from the object database (large blobs are never loaded whole)
+    public InputStream open(SourceFile file) throws IOException {
+        return reader.open(file.blobId(), Constants.OBJ_BLOB).openStream();
+    }
+
+    public long size(SourceFile file) throws IOException {
+        return reader.getObjectSize(file.blobId(), Constants.OBJ_BLOB);
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+    }
+}
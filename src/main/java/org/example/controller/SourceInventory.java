@@ -0,0 +1,132 @@
+package org.example.controller;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.example.util.Printer;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+public class SourceInventory {
+
+    /** Class responsibility: list the .java files of every release, reading each distinct blob only once.
+     *  - releases are given in chronological order, each one is diffed against the previous one,
+     *    so only the files changed since then are looked at
+     *  - size and LOC are derived from the blob and kept by blob id: a file that did not change,
+     *    or that went back to an older content, shares the entry of the release where that blob was first seen
+     *  - the stats survive between runs in a binary file, one per project:
+     *      format version, blob count, then for every blob: raw 20 byte id, size, LOC
+     */
+
+    public record BlobStats(long size, int loc) {}
+
+    public record Entry(String path, ObjectId blobId, BlobStats stats) {}
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path file;
+    private final Map<ObjectId, BlobStats> statsByBlob = new HashMap<>();
+    private int blobsRead = 0;
+
+    //state of the previous release: its tree and its files by path
+    private ObjectId previousTree;
+    private final TreeMap<String, Entry> currentFiles = new TreeMap<>();
+
+    public SourceInventory(Path dir, String projName) {
+        this.file = dir.resolve(projName + "Blobs.bin");
+        load();
+    }
+
+
+    // files of the next release, sorted by path
+    public List<Entry> next(ReleaseSnapshot snapshot) throws IOException {
+
+        List<ReleaseSnapshot.SourceFile> files;
+        if (previousTree == null) {
+            files = snapshot.listJavaFiles();
+        } else {
+            files = snapshot.listChangedJavaFiles(previousTree);
+        }
+
+        for (ReleaseSnapshot.SourceFile sourceFile : files) {
+            if (sourceFile.blobId() == null) {
+                currentFiles.remove(sourceFile.path());
+                continue;
+            }
+            BlobStats stats = statsByBlob.get(sourceFile.blobId());
+            if (stats == null) {
+                stats = readStats(snapshot, sourceFile);
+                statsByBlob.put(sourceFile.blobId(), stats);
+            }
+            currentFiles.put(sourceFile.path(), new Entry(sourceFile.path(), sourceFile.blobId(), stats));
+        }
+
+        previousTree = snapshot.getTreeId();
+        return List.copyOf(currentFiles.values());
+    }
+
+    // distinct blobs read (not found in the cache) since this inventory was created
+    public int getBlobsRead() { return blobsRead; }
+
+    public int getBlobCount() { return statsByBlob.size(); }
+
+    private BlobStats readStats(ReleaseSnapshot snapshot, ReleaseSnapshot.SourceFile sourceFile) throws IOException {
+        blobsRead++;
+        long size = 0;
+        int lines = 0;
+        byte last = '\n';
+        byte[] buffer = new byte[8192];
+        try (InputStream in = snapshot.open(sourceFile)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                for (int i = 0; i < n; i++) {
+                    if (buffer[i] == '\n') lines++;
+                }
+                size += n;
+                if (n > 0) last = buffer[n - 1];
+            }
+        }
+        //a last line without the final newline still counts
+        if (last != '\n') lines++;
+        return new BlobStats(size, lines);
+    }
+
+
+    private void load() {
+        if (!Files.exists(file)) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != FORMAT_VERSION) return;
+            int count = in.readInt();
+            byte[] raw = new byte[20];
+            for (int i = 0; i < count; i++) {
+                in.readFully(raw);
+                statsByBlob.put(ObjectId.fromRaw(raw), new BlobStats(in.readLong(), in.readInt()));
+            }
+        } catch (IOException e) {
+            //an unreadable cache only costs reading the blobs again
+            statsByBlob.clear();
+            Printer.errorPrint("Blob cache is unreadable, release files will be read again: " + e.getMessage());
+        }
+    }
+
+    public void save() throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(statsByBlob.size());
+            byte[] raw = new byte[20];
+            for (Map.Entry<ObjectId, BlobStats> entry : statsByBlob.entrySet()) {
+                entry.getKey().copyRawTo(raw, 0);
+                out.write(raw);
+                out.writeLong(entry.getValue().size());
+                out.writeInt(entry.getValue().loc());
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.controller;
+
+import org.example.entity.GitTag;
+import org.example.entity.Release;
+import org.example.util.Pair;
+import org.example.util.VersionKey;
+
+import java.util.*;
+
+public class TagMatcher {
+
+    /** Class responsibility: match JIRA releases to Git tags through their normalized VersionKey.
+     *  Tags are indexed once by key, every release is then a hash lookup.
+     *  Ties are resolved deterministically and reported:
+     *      - more tags with the same key: the one with the same untrimmed numbers wins ("1.0.0" over "1.0"),
+     *        then the earliest commit date, then the name
+     *      - no final tag: the latest pre-release tag of the same version (e.g. the last -rc) is used
+     */
+
+    public enum Status { MATCHED, AMBIGUOUS, PRERELEASE_ONLY, UNMATCHED_RELEASE, UNMATCHED_TAG }
+
+    public record Entry(Status status, Release release, GitTag tag, List<GitTag> candidates) {}
+
+    public record Result(List<Pair<Release, GitTag>> matchedPairs, List<Entry> report) {}
+
+    private static final Comparator<GitTag> TAG_ORDER = Comparator.comparing(GitTag::getCommitDate)
+            .thenComparing(GitTag::getName);
+
+
+    public Result match(List<Release> releases, List<GitTag> tags) {
+
+        Map<String, List<GitTag>> tagsByKey = new HashMap<>();
+        Map<String, List<GitTag>> preReleasesByFamily = new HashMap<>();
+        Map<GitTag, VersionKey> tagKeys = new HashMap<>();
+        for (GitTag tag : tags) {
+            VersionKey key = VersionKey.parse(tag.getName());
+            if (key == null) continue;
+            tagKeys.put(tag, key);
+            tagsByKey.computeIfAbsent(key.key(), k -> new ArrayList<>()).add(tag);
+            if (key.isPreRelease()) {
+                preReleasesByFamily.computeIfAbsent(key.family(), k -> new ArrayList<>()).add(tag);
+            }
+        }
+
+        List<Pair<Release, GitTag>> matchedPairs = new ArrayList<>();
+        List<Entry> report = new ArrayList<>();
+        Set<GitTag> usedTags = new HashSet<>();
+
+        for (Release release : releases) {
+            VersionKey key = VersionKey.parse(release.getName());
+            List<GitTag> candidates = key == null ? List.of() : tagsByKey.getOrDefault(key.key(), List.of());
+
+            Status status;
+            GitTag chosen;
+            if (!candidates.isEmpty()) {
+                chosen = pick(candidates, key, tagKeys);
+                status = candidates.size() == 1 ? Status.MATCHED : Status.AMBIGUOUS;
+            } else if (key != null && !key.isPreRelease() && preReleasesByFamily.containsKey(key.family())) {
+                candidates = preReleasesByFamily.get(key.family());
+                chosen = Collections.max(candidates, TAG_ORDER);
+                status = Status.PRERELEASE_ONLY;
+            } else {
+                report.add(new Entry(Status.UNMATCHED_RELEASE, release, null, List.of()));
+                continue;
+            }
+
+            matchedPairs.add(new Pair<>(release, chosen));
+            usedTags.add(chosen);
+            report.add(new Entry(status, release, chosen, sorted(candidates)));
+        }
+
+        for (GitTag tag : sorted(tags)) {
+            if (!usedTags.contains(tag)) report.add(new Entry(Status.UNMATCHED_TAG, null, tag, List.of()));
+        }
+        return new Result(matchedPairs, report);
+    }
+
+    private GitTag pick(List<GitTag> candidates, VersionKey releaseKey, Map<GitTag, VersionKey> tagKeys) {
+        if (candidates.size() == 1) return candidates.getFirst();
+        return candidates.stream()
+                .min(Comparator.comparing((GitTag tag) -> !tagKeys.get(tag).exactNumbers().equals(releaseKey.exactNumbers()))
+                        .thenComparing(TAG_ORDER))
+                .orElseThrow();
+    }
+
+    private static List<GitTag> sorted(Collection<GitTag> tags) {
+        List<GitTag> sorted = new ArrayList<>(tags);
+        sorted.sort(TAG_ORDER);
+        return sorted;
+    }
+}
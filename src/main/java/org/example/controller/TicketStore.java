@@ -0,0 +1,183 @@
+package org.example.controller;
+
+import org.example.entity.JiraIssueRecord;
+import org.example.util.Printer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.*;
+
+public class TicketStore {
+
+    /** Class responsibility: keep a local copy of the project's fixed bug tickets between runs.
+     *  - <proj>Issues.jsonl: one JiraIssueRecord per line, as fetched from JIRA
+     *  - <proj>Sync.properties: time of the last sync, a revision bumped on every change
+     *  The store is only rewritten when something changed.
+     */
+
+    private final Path issuesFile;
+    private final Path stateFile;
+    private final Map<String, JiraIssueRecord> issues = new HashMap<>();
+    private final Properties state = new Properties();
+    private boolean changed;
+
+    public TicketStore(Path dir, String projName) throws IOException {
+        this.issuesFile = dir.resolve(projName + "Issues.jsonl");
+        this.stateFile = dir.resolve(projName + "Sync.properties");
+        load();
+    }
+
+
+    public Instant getLastSync() {
+        String lastSync = state.getProperty("lastSync");
+        return lastSync != null ? Instant.parse(lastSync) : null;
+    }
+
+    public long getRevision() {
+        return Long.parseLong(state.getProperty("revision", "0"));
+    }
+
+    public int size() {
+        return issues.size();
+    }
+
+    //issues newest first (numeric id descending, then key): the one order of the tickets of a run, whatever the sync mode
+    public List<JiraIssueRecord> getIssues() {
+        List<JiraIssueRecord> ordered = new ArrayList<>(issues.values());
+        ordered.sort(Comparator.comparingLong((JiraIssueRecord issue) -> numericId(issue)).reversed()
+                .thenComparing(JiraIssueRecord::key));
+        return ordered;
+    }
+
+    public Set<String> getKeys() {
+        return new HashSet<>(issues.keySet());
+    }
+
+
+    public boolean upsert(JiraIssueRecord issue) {
+        JiraIssueRecord previous = issues.put(issue.key(), issue);
+        boolean modified = !issue.equals(previous);
+        changed |= modified;
+        return modified;
+    }
+
+    public boolean remove(String key) {
+        boolean removed = issues.remove(key) != null;
+        changed |= removed;
+        return removed;
+    }
+
+    public void replaceAll(List<JiraIssueRecord> fetched) {
+        //full download: whatever is not in the new list has been deleted
+        Set<String> keys = new HashSet<>();
+        for (JiraIssueRecord issue : fetched) {
+            keys.add(issue.key());
+            upsert(issue);
+        }
+        for (String key : getKeys()) {
+            if (!keys.contains(key)) remove(key);
+        }
+    }
+
+
+    public void save(Instant syncStart) throws IOException {
+
+        //the sync time is the moment the sync started, so nothing updated while it ran is lost
+        state.setProperty("lastSync", syncStart.toString());
+        if (changed) {
+            state.setProperty("revision", Long.toString(getRevision() + 1));
+            writeIssues();
+        }
+        writeState();
+        Printer.println("Ticket store saved: " + issues.size() + " tickets, revision " + getRevision());
+    }
+
+    private void load() throws IOException {
+        if (Files.exists(stateFile)) {
+            try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+                state.load(reader);
+            }
+        }
+        if (!Files.exists(issuesFile)) return;
+
+        try (BufferedReader reader = Files.newBufferedReader(issuesFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                JiraIssueRecord issue = fromJson(new JSONObject(line));
+                issues.put(issue.key(), issue);
+            }
+        } catch (JSONException e) {
+            //a broken store is not fatal, the next sync simply starts from scratch
+            Printer.errorPrint("Ticket store is corrupted, a full sync will be done: " + e.getMessage());
+            issues.clear();
+            state.remove("lastSync");
+        }
+    }
+
+    private void writeIssues() throws IOException {
+        Files.createDirectories(issuesFile.getParent());
+        Path tmp = issuesFile.resolveSibling(issuesFile.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (JiraIssueRecord issue : getIssues()) {
+                writer.write(toJson(issue).toString());
+                writer.newLine();
+            }
+        }
+        Files.move(tmp, issuesFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeState() throws IOException {
+        Files.createDirectories(stateFile.getParent());
+        try (Writer writer = Files.newBufferedWriter(stateFile, StandardCharsets.UTF_8)) {
+            state.store(writer, null);
+        }
+    }
+
+
+    private static JSONObject toJson(JiraIssueRecord issue) {
+        JSONObject json = new JSONObject();
+        json.put("id", issue.issueId());
+        json.put("key", issue.key());
+        json.put("created", issue.created());
+        json.put("status", issue.status());
+        json.put("resolution", issue.resolution());
+        json.put("versions", new JSONArray(issue.versionNames()));
+        json.put("fixVersions", new JSONArray(issue.fixVersionNames()));
+        json.put("comment", issue.comment());
+        return json;
+    }
+
+    private static JiraIssueRecord fromJson(JSONObject json) {
+        return new JiraIssueRecord(json.optString("id", null), json.getString("key"), json.optString("created", null),
+                json.optString("status", null), json.optString("resolution", null),
+                toStringList(json.optJSONArray("versions")), toStringList(json.optJSONArray("fixVersions")),
+                json.optString("comment", ""));
+    }
+
+    private static List<String> toStringList(JSONArray array) {
+        List<String> values = new ArrayList<>();
+        if (array == null) return values;
+        for (int i = 0; i < array.length(); i++) values.add(array.getString(i));
+        return values;
+    }
+
+    private static long numericId(JiraIssueRecord issue) {
+        try {
+            return Long.parseLong(issue.issueId());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
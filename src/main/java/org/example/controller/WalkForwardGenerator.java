@@ -0,0 +1,211 @@
+package org.example.controller;
+
+import org.example.entity.JiraTicket;
+import org.example.entity.Release;
+import org.example.entity.ReleaseTimeline;
+import org.example.util.ColumnarTable;
+import org.example.util.CsvWriter;
+import org.example.util.Printer;
+import org.example.util.RunContext;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class WalkForwardGenerator {
+
+    /** Class responsibility: turn the method dataset into walk-forward training/testing sets.
+     *  Iteration i tests on the i-th release of the dataset (releases in partitioning order) and trains on the ones before it.
+     *  - testing rows keep the labels of the full run: every ticket, the configured proportion
+     *  - training labels only use the tickets known when the testing release ships (FV before it), their missing IV
+     *    is estimated with the p of all the tickets known at that point (ProportionController.computeVisibleP)
+     *  Tickets become known in fix order, and add their methods to the buggy counts of the releases they affect when
+     *  they appear. A ticket with a reported IV never changes again. When the known p changes, the IVs estimated with
+     *  p are estimated again: only the tickets whose IV moved take their methods off the releases they affected and
+     *  add them to the new ones (a method stays buggy while another ticket counts it). The fix commits are never
+     *  diffed again (the methods they touch come from BugLabeler.touchedMethods).
+     *  Output: <proj>_WF<i>_Training.arff, <proj>_WF<i>_Testing.arff and a summary <proj>_WalkForward.csv.
+     */
+
+    private static final Logger LOGGER = Logger.getLogger(WalkForwardGenerator.class.getName());
+
+    private final String projName;
+    private final RunContext context;
+
+    public WalkForwardGenerator() {
+        this(RunContext.standalone());
+    }
+
+    public WalkForwardGenerator(RunContext context) {
+        this.context = context;
+        this.projName = context.projectName();
+    }
+
+    // tickets: as used by the full run (their estimated IVs are ignored); touchedByTicket: see BugLabeler.touchedMethods.
+    // Returns the files written
+    public List<Path> generate(ColumnarTable methods, ReleaseTimeline timeline, List<JiraTicket> tickets,
+                        Map<String, Set<String>> touchedByTicket) throws IOException {
+
+        List<ReleaseRows> releases = releaseRows(methods, timeline);
+        if (releases.size() < 2) {
+            Printer.println("Walk-forward: at least two releases are needed, no dataset generated.");
+            return List.of();
+        }
+
+        //tickets as JIRA reported them, in fix order: all of them give the p known at every release,
+        //only the ones with fixed methods can label anything
+        List<JiraTicket> pending = new ArrayList<>();
+        for (JiraTicket ticket : tickets) {
+            if (ticket.hasFixVersion()) pending.add(ticket.reportedCopy());
+        }
+        pending.sort(Comparator.comparingInt(JiraTicket::fixOrdinal));
+
+        ProportionController proportion = new ProportionController(context);
+        double[] visibleP = proportion.computeVisibleP(pending, timeline);
+
+        //buggy method keys of every dataset release (by position in 'releases'), with the number of known tickets
+        //that mark them: the ones with a reported IV, and the ones with an IV estimated with the current p
+        List<Map<String, Integer>> buggy = new ArrayList<>();
+        int[] positionByOrdinal = new int[timeline.size()];
+        Arrays.fill(positionByOrdinal, -1);
+        for (int i = 0; i < releases.size(); i++) {
+            buggy.add(new HashMap<>());
+            positionByOrdinal[releases.get(i).ordinal()] = i;
+        }
+        List<JiraTicket> estimated = new ArrayList<>(); //known tickets without a reported IV, with their current IV
+        double estimatedWith = Double.NaN;
+
+        DatasetExporter exporter = new DatasetExporter(context);
+        int pathColumn = methods.column(MethodExtractor.PATH);
+        int methodColumn = methods.column(MethodExtractor.METHOD);
+        int buggyColumn = methods.column(MethodExtractor.BUGGY);
+
+        int next = 0;
+        int known = 0;
+        int visibleUntil = -1;
+        List<Path> written = new ArrayList<>();
+        try (CsvWriter csv = CsvWriter.open(context, projName + "_WalkForward.csv")) {
+            csv.header("Iteration", "TestingRelease", "TrainingReleases", "KnownTickets", "P",
+                    "TrainingRows", "TrainingBuggy", "TestingRows", "TestingBuggy");
+            written.add(csv.getPath());
+
+            for (int iteration = 1; iteration < releases.size(); iteration++) {
+                ReleaseRows testing = releases.get(iteration);
+
+                //tickets fixed before the testing release become known, with the p known at that release
+                visibleUntil = Math.max(visibleUntil, testing.ordinal());
+                int first = next;
+                while (next < pending.size() && pending.get(next).fixOrdinal() < visibleUntil) next++;
+                double p = visibleP[visibleUntil];
+
+                //an estimated IV depends on p: when p moved, only the tickets whose IV moves change their labels
+                if (Double.compare(p, estimatedWith) != 0) {
+                    for (JiraTicket ticket : estimated) {
+                        int injectOrdinal = proportion.estimateInjectOrdinal(ticket, p, timeline);
+                        if (injectOrdinal == ticket.injectOrdinal()) continue;
+                        Set<String> touched = touchedByTicket.get(ticket.getName());
+                        label(ticket, touched, timeline, positionByOrdinal, buggy, -1);
+                        ticket.setInjectVersion(injectOrdinal);
+                        proportion.determineAffectedVersions(ticket, timeline);
+                        label(ticket, touched, timeline, positionByOrdinal, buggy, 1);
+                    }
+                    estimatedWith = p;
+                }
+
+                //the new tickets: a reported IV only gets its affected versions, a missing one is estimated with p
+                List<JiraTicket> appeared = new ArrayList<>();
+                for (JiraTicket ticket : pending.subList(first, next)) {
+                    if (!touchedByTicket.containsKey(ticket.getName())) continue;
+                    appeared.add(ticket);
+                    if (ticket.injectOrdinal() < 0) estimated.add(ticket);
+                }
+                known = next;
+                proportion.applyProportion(appeared, timeline, p);
+                for (JiraTicket ticket : appeared) {
+                    label(ticket, touchedByTicket.get(ticket.getName()), timeline, positionByOrdinal, buggy, 1);
+                }
+
+                int trainingEnd = testing.start(); //training releases are the rows before the testing release
+                int trainingReleases = 0;
+                for (ReleaseRows release : releases) {
+                    if (release.start() < trainingEnd) trainingReleases++;
+                }
+                int[] trainingBuggyRows = {0};
+                int[] testingBuggyRows = {0};
+                String prefix = projName + "_WF" + iteration;
+                written.add(exporter.writeArff(methods, prefix + "_Training.arff", row -> row < trainingEnd, row -> {
+                    int position = positionOf(releases, row);
+                    Map<String, Integer> counts = buggy.get(position);
+                    if (counts.isEmpty()) return false;
+                    String key = BugLabeler.methodKey(methods.getString(pathColumn, row), methods.getString(methodColumn, row));
+                    boolean isBuggy = counts.containsKey(key);
+                    if (isBuggy) trainingBuggyRows[0]++;
+                    return isBuggy;
+                }));
+                written.add(exporter.writeArff(methods, prefix + "_Testing.arff", row -> row >= testing.start() && row < testing.end(), row -> {
+                    boolean isBuggy = methods.getInt(buggyColumn, row) == 1;
+                    if (isBuggy) testingBuggyRows[0]++;
+                    return isBuggy;
+                }));
+
+                csv.field(iteration).field(testing.release().getName()).field(trainingReleases).field(known).field(p)
+                        .field(trainingEnd).field(trainingBuggyRows[0])
+                        .field(testing.end() - testing.start()).field(testingBuggyRows[0])
+                        .endRow();
+            }
+        }
+
+        LOGGER.log(Level.INFO, "Walk-forward: {0} iterations, {1} of {2} tickets known at the last one",
+                new Object[]{releases.size() - 1, known, pending.size()});
+        Printer.println(String.format("Walk-forward complete: %d training/testing pairs saved.", releases.size() - 1));
+        return written;
+    }
+
+
+    // adds (delta 1) or takes back (delta -1) the methods touched by a ticket in the buggy counts of the dataset
+    // releases it affects; a key no ticket counts any more is removed
+    private static void label(JiraTicket ticket, Set<String> touched, ReleaseTimeline timeline, int[] positionByOrdinal,
+                              List<Map<String, Integer>> buggy, int delta) {
+        for (Release release : ticket.getAffectedVersions()) {
+            int position = positionByOrdinal[timeline.ordinalOf(release)];
+            if (position < 0) continue;
+            Map<String, Integer> counts = buggy.get(position);
+            for (String key : touched) counts.merge(key, delta, (count, change) -> count + change == 0 ? null : count + change);
+        }
+    }
+
+    // rows [start, end) of one release of the dataset
+    private record ReleaseRows(Release release, int ordinal, int start, int end) {}
+
+    private static List<ReleaseRows> releaseRows(ColumnarTable methods, ReleaseTimeline timeline) {
+        //MethodExtractor writes the releases one after the other, in partitioning order
+        int idColumn = methods.column(MethodExtractor.RELEASE_ID);
+        List<ReleaseRows> releases = new ArrayList<>();
+        int start = 0;
+        for (int row = 1; row <= methods.rowCount(); row++) {
+            if (row == methods.rowCount() || !methods.getString(idColumn, row).equals(methods.getString(idColumn, start))) {
+                Release release = timeline.findById(methods.getString(idColumn, start));
+                int ordinal = timeline.ordinalOf(release);
+                if (ordinal >= 0) releases.add(new ReleaseRows(release, ordinal, start, row));
+                start = row;
+            }
+        }
+        return releases;
+    }
+
+    private static int positionOf(List<ReleaseRows> releases, int row) {
+        int low = 0;
+        int high = releases.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (releases.get(mid).start() <= row) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
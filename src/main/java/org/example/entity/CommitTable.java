@@ -0,0 +1,205 @@
+package org.example.entity;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.util.RawParseUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * The commits of a repository, stored column by column and referenced everywhere else by their ordinal.
+ * - ids are kept as raw 20 byte SHA-1s in a single array, plus an open addressing index from id to ordinal
+ * - dates are epoch seconds (git has no finer resolution), authors are ordinals of a table of distinct names
+ * - messages are not stored at all: a MessageReader loads them from the object database when they are needed
+ * Ordinals are stable: commits are only ever appended (e.g. by the partitioning, for commits of release branches
+ * that HEAD does not reach). Reads are safe from any thread as long as no commit is being added.
+ */
+public final class CommitTable {
+
+    private static final int ID_LENGTH = Constants.OBJECT_ID_LENGTH;
+
+    private final Repository repository;
+    private byte[] ids;
+    private long[] dates;
+    private int[] authors;
+    private int size;
+
+    private final List<String> authorNames = new ArrayList<>();
+    private final Map<String, Integer> authorOrdinals = new HashMap<>();
+
+    private int[] index; //ordinal + 1 of the commit in every slot, 0 for an empty slot
+
+    public CommitTable(Repository repository, int expectedSize) {
+        this.repository = repository;
+        int capacity = Math.max(16, expectedSize);
+        this.ids = new byte[capacity * ID_LENGTH];
+        this.dates = new long[capacity];
+        this.authors = new int[capacity];
+        this.index = new int[tableSize(capacity)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public Repository getRepository() {
+        return repository;
+    }
+
+    // appends a commit and returns its ordinal
+    public int add(AnyObjectId id, String author, long epochSecond) {
+        if (size == dates.length) grow();
+        int ordinal = size++;
+        id.copyRawTo(ids, ordinal * ID_LENGTH);
+        dates[ordinal] = epochSecond;
+        authors[ordinal] = authorOrdinals.computeIfAbsent(author == null ? "" : author, name -> {
+            authorNames.add(name);
+            return authorNames.size() - 1;
+        });
+        if (size * 2 > index.length) {
+            rehash();
+        } else {
+            insert(ordinal);
+        }
+        return ordinal;
+    }
+
+    // every commit of other, in its order, after the commits of this table
+    public void addAll(CommitTable other) {
+        for (int i = 0; i < other.size; i++) add(other.id(i), other.author(i), other.dates[i]);
+    }
+
+    // ordinal of a commit, -1 when it is not in the table
+    public int ordinalOf(AnyObjectId id) {
+        int mask = index.length - 1;
+        for (int slot = id.hashCode() & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+            int ordinal = index[slot] - 1;
+            if (id.compareTo(ids, ordinal * ID_LENGTH) == 0) return ordinal;
+        }
+        return -1;
+    }
+
+    public ObjectId id(int ordinal) {
+        Objects.checkIndex(ordinal, size);
+        return ObjectId.fromRaw(ids, ordinal * ID_LENGTH);
+    }
+
+    // 40 hex digits
+    public String name(int ordinal) {
+        return id(ordinal).getName();
+    }
+
+    public void copyRawId(int ordinal, byte[] target, int offset) {
+        Objects.checkIndex(ordinal, size);
+        System.arraycopy(ids, ordinal * ID_LENGTH, target, offset, ID_LENGTH);
+    }
+
+    public long epochSecond(int ordinal) {
+        Objects.checkIndex(ordinal, size);
+        return dates[ordinal];
+    }
+
+    public Instant date(int ordinal) {
+        return Instant.ofEpochSecond(epochSecond(ordinal));
+    }
+
+    public String author(int ordinal) {
+        return authorNames.get(authorOrdinal(ordinal));
+    }
+
+    public int authorOrdinal(int ordinal) {
+        Objects.checkIndex(ordinal, size);
+        return authors[ordinal];
+    }
+
+    public int authorCount() {
+        return authorNames.size();
+    }
+
+    public String authorName(int authorOrdinal) {
+        return authorNames.get(authorOrdinal);
+    }
+
+    // one per thread: ObjectReaders are not thread safe
+    public MessageReader messages() {
+        return new MessageReader();
+    }
+
+
+    /**
+     * Reads commit messages from the object database. raw() gives the undecoded commit buffer,
+     * e.g. for a byte level scan, message() decodes the message with the encoding declared by the commit.
+     */
+    public final class MessageReader implements AutoCloseable {
+        private ObjectReader reader;
+
+        private MessageReader() {}
+
+        // the whole raw commit object; the message starts at messageStart(buffer)
+        public byte[] raw(int ordinal) {
+            try {
+                if (reader == null) reader = repository.newObjectReader();
+                return reader.open(id(ordinal), Constants.OBJ_COMMIT).getCachedBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public String message(int ordinal) {
+            byte[] buffer = raw(ordinal);
+            int start = messageStart(buffer);
+            return RawParseUtils.decode(RawParseUtils.guessEncoding(buffer), buffer, start, buffer.length);
+        }
+
+        @Override
+        public void close() {
+            if (reader != null) reader.close();
+        }
+    }
+
+    public static int messageStart(byte[] commitBuffer) {
+        int start = RawParseUtils.commitMessage(commitBuffer, 0);
+        return start < 0 ? commitBuffer.length : start;
+    }
+
+
+    private void grow() {
+        int capacity = dates.length * 2;
+        ids = Arrays.copyOf(ids, capacity * ID_LENGTH);
+        dates = Arrays.copyOf(dates, capacity);
+        authors = Arrays.copyOf(authors, capacity);
+    }
+
+    private void rehash() {
+        index = new int[tableSize(size)];
+        for (int ordinal = 0; ordinal < size; ordinal++) insert(ordinal);
+    }
+
+    private void insert(int ordinal) {
+        int mask = index.length - 1;
+        int slot = hash(ordinal) & mask;
+        while (index[slot] != 0) slot = (slot + 1) & mask;
+        index[slot] = ordinal + 1;
+    }
+
+    // same value as ObjectId.hashCode(): the second word of the id
+    private int hash(int ordinal) {
+        int offset = ordinal * ID_LENGTH + 4;
+        return (ids[offset] & 0xFF) << 24 | (ids[offset + 1] & 0xFF) << 16 | (ids[offset + 2] & 0xFF) << 8 | (ids[offset + 3] & 0xFF);
+    }
+
+    private static int tableSize(int entries) {
+        //power of two, at most half full
+        return Integer.highestOneBit(Math.max(16, entries) * 4 - 1);
+    }
+}
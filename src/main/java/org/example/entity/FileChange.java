@@ -0,0 +1,9 @@
+package org.example.entity;
+
+import org.eclipse.jgit.diff.DiffEntry;
+
+/**
+ * One file touched by a commit, compared with its first parent (or with the empty tree for a root commit).
+ * path is the new path, the old one for a deleted file.
+ */
+public record FileChange(String commitId, String path, int added, int deleted, DiffEntry.ChangeType changeType) {}
@@ -0,0 +1,17 @@
+package org.example.entity;
+
+import java.util.List;
+
+/**
+ * A JIRA issue as it comes out of the REST API, before its versions and dates are mapped to releases.
+ * This is what the ticket store persists, so the same issue can be turned into a JiraTicket again
+ * when the release list changes.
+ */
+public record JiraIssueRecord(String issueId, String key, String created, String status, String resolution,
+                              List<String> versionNames, List<String> fixVersionNames, String comment) {
+
+    public boolean isFixedBug() {
+        //same condition of the JQL used for the full download
+        return ("Resolved".equals(status) || "Closed".equals(status)) && "Fixed".equals(resolution);
+    }
+}
@@ -1,31 +1,63 @@
 package org.example.entity;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class JiraTicket {
 
+    /*
+     * Versions are kept as chronological ordinals of the release timeline the ticket was read against (-1: unknown),
+     * release objects are only looked up when they are printed.
+     * Affected versions are the list reported by JIRA until the proportion sets them to the ordinal range [IV, FV):
+     * from then on "is release r affected" is two comparisons and the list is a view of the timeline.
+     */
 
     private final String issueId;
     private final String name;
     private final String resolution;
     private final String description; // Rinominato da 'comment' per chiarezza
 
-    private final Release openingVersion;
-    private Release injectVersion; // 'injectedVersion' è un nome più comune
-    private final List<Release> fixVersions;
-    private List<Release> affectedVersions;
+    private final ReleaseTimeline timeline;
+    private final int openingVersion;
+    private final int reportedInjectVersion;
+    private int injectVersion; // 'injectedVersion' è un nome più comune
+    private final int[] fixVersions;
+    private final int[] reportedAffectedVersions;
+    private int affectedFrom = -1; // [affectedFrom, affectedTo) once set, -1 while the JIRA list is used
+    private int affectedTo = -1;
 
 
-    public JiraTicket(String issueId, String name, String resolution, String description,
+    public JiraTicket(String issueId, String name, String resolution, String description, ReleaseTimeline timeline,
                       Release openingVersion, Release injectVersion, List<Release> fixVersions, List<Release> affectedVersions) {
         this.issueId = issueId;
         this.name = name;
         this.resolution = resolution;
         this.description = description;
-        this.openingVersion = openingVersion;
-        this.injectVersion = injectVersion;
-        this.fixVersions = fixVersions;
-        this.affectedVersions = affectedVersions;
+        this.timeline = timeline;
+        this.openingVersion = ordinalOf(openingVersion);
+        this.reportedInjectVersion = ordinalOf(injectVersion);
+        this.injectVersion = this.reportedInjectVersion;
+        this.fixVersions = ordinalsOf(fixVersions);
+        this.reportedAffectedVersions = ordinalsOf(affectedVersions);
+    }
+
+    private JiraTicket(JiraTicket reported) {
+        this.issueId = reported.issueId;
+        this.name = reported.name;
+        this.resolution = reported.resolution;
+        this.description = reported.description;
+        this.timeline = reported.timeline;
+        this.openingVersion = reported.openingVersion;
+        this.reportedInjectVersion = reported.reportedInjectVersion;
+        this.injectVersion = reported.reportedInjectVersion;
+        this.fixVersions = reported.fixVersions.clone();
+        this.reportedAffectedVersions = reported.reportedAffectedVersions;
+    }
+
+    // the ticket as JIRA reported it: no estimated IV, no affected range (e.g. to apply a different proportion)
+    public JiraTicket reportedCopy() {
+        return new JiraTicket(this);
     }
 
 
@@ -33,16 +65,77 @@ public class JiraTicket {
     public String getName() { return name; }
     public String getResolution() { return resolution; }
     public String getDescription() { return description; }
-    public Release getOpeningVersion() { return openingVersion; }
-    public Release getInjectVersion() { return injectVersion; }
-    public List<Release> getFixVersions() { return fixVersions; }
-    public List<Release> getAffectedVersions() { return affectedVersions; }
+    public ReleaseTimeline getTimeline() { return timeline; }
+
+    // ordinals, -1 when unknown; FV is the last of the fix versions
+    public int openingOrdinal() { return openingVersion; }
+    public int injectOrdinal() { return injectVersion; }
+    public int fixOrdinal() { return fixVersions.length == 0 ? -1 : fixVersions[fixVersions.length - 1]; }
+    public boolean hasFixVersion() { return fixVersions.length > 0; }
+
+    public Release getOpeningVersion() { return release(openingVersion); }
+    public Release getInjectVersion() { return release(injectVersion); }
+    public Release getFixVersion() { return release(fixOrdinal()); }
+
+    public List<Release> getFixVersions() { return releases(fixVersions); }
+
+    public List<Release> getAffectedVersions() {
+        return affectedFrom < 0 ? releases(reportedAffectedVersions) : timeline.between(affectedFrom, affectedTo);
+    }
+
+    public boolean isAffected(int ordinal) {
+        if (affectedFrom >= 0) return ordinal >= affectedFrom && ordinal < affectedTo;
+        for (int reported : reportedAffectedVersions) {
+            if (reported == ordinal) return true;
+        }
+        return false;
+    }
+
+    public boolean hasAffectedVersions() {
+        return affectedFrom >= 0 ? affectedFrom < affectedTo : reportedAffectedVersions.length > 0;
+    }
+
+    public void setInjectVersion(int injectOrdinal) {
+        this.injectVersion = injectOrdinal;
+    }
+
+    // releases with an ordinal in [from, to) are affected
+    public void setAffectedRange(int from, int to) {
+        this.affectedFrom = from;
+        this.affectedTo = Math.max(from, to);
+    }
+
+    // stable: fix versions with the same date keep their order
+    public void sortFixVersionsByDate() {
+        for (int i = 1; i < fixVersions.length; i++) {
+            int ordinal = fixVersions[i];
+            int j = i - 1;
+            while (j >= 0 && timeline.dateOf(fixVersions[j]).isAfter(timeline.dateOf(ordinal))) {
+                fixVersions[j + 1] = fixVersions[j];
+                j--;
+            }
+            fixVersions[j + 1] = ordinal;
+        }
+    }
+
+
+    private int ordinalOf(Release release) {
+        return release == null ? -1 : timeline.ordinalOf(release);
+    }
+
+    // releases outside the timeline are dropped, like versions JIRA reports without a release date
+    private int[] ordinalsOf(List<Release> releases) {
+        if (releases == null) return new int[0];
+        return releases.stream().mapToInt(this::ordinalOf).filter(ordinal -> ordinal >= 0).toArray();
+    }
 
-    public void setInjectVersion(Release injectVersion) {
-        this.injectVersion = injectVersion;
+    private Release release(int ordinal) {
+        return ordinal < 0 ? null : timeline.getByOrdinal(ordinal);
     }
 
-    public void setAffectVersions(List<Release> affectedVersions) {
-        this.affectedVersions = affectedVersions;
+    private List<Release> releases(int[] ordinals) {
+        List<Release> result = new ArrayList<>(ordinals.length);
+        for (int ordinal : ordinals) result.add(timeline.getByOrdinal(ordinal));
+        return Collections.unmodifiableList(result);
     }
-}
\ No newline at end of file
+}
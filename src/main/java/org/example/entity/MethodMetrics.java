@@ -0,0 +1,14 @@
+package org.example.entity;
+
+/**
+ * Metrics of one method (or constructor) of a source file, as computed by MethodExtractor.
+ * name is the type-qualified signature, e.g. "Broker.find(Class, Object)"; lines are 1-based and inclusive.
+ * fanOut counts the distinct methods called (name and number of arguments).
+ */
+public record MethodMetrics(String name, int startLine, int endLine, int cyclomatic, int parameters,
+                            int maxNesting, int fanOut, int statements) {
+
+    public int loc() {
+        return endLine - startLine + 1;
+    }
+}
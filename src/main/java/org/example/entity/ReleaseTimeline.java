@@ -0,0 +1,127 @@
+package org.example.entity;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Immutable index over the project releases, built once from the list returned by ReleaseController.extractReleases.
+ * - every release gets a chronological ordinal (ties keep the order of the input list)
+ * - date lookups are a binary search instead of a scan of the list
+ * - name and id lookups are a hash lookup; like the old stream().filter().findFirst(), the first release with a name wins
+ * - a date interval maps to a range of ordinals, so "releases in [IV, FV)" is two binary searches
+ */
+public final class ReleaseTimeline {
+
+    private final List<Release> releases;
+    private final List<Release> chronological;
+    private final Map<Release, Integer> ordinals = new IdentityHashMap<>();
+    private final Map<String, Release> byName = new HashMap<>();
+    private final Map<String, Release> byId = new HashMap<>();
+
+    // prefixMax[i] = latest date among releases[0..i], used to search dates on unsorted input
+    private final Instant[] prefixMax;
+    // ordinal of every release of the input list, and whether the input was already in date order
+    private final int[] inputOrdinals;
+    private final boolean chronologicalInput;
+
+    private ReleaseTimeline(List<Release> releases) {
+        this.releases = List.copyOf(releases);
+
+        List<Release> sorted = new ArrayList<>(this.releases);
+        sorted.sort(Comparator.comparing(Release::getDate)); //stable: equal dates keep the input order
+        this.chronological = Collections.unmodifiableList(sorted);
+        for (int i = 0; i < sorted.size(); i++) {
+            ordinals.putIfAbsent(sorted.get(i), i);
+        }
+
+        this.prefixMax = new Instant[this.releases.size()];
+        Instant max = null;
+        for (int i = 0; i < this.releases.size(); i++) {
+            Release release = this.releases.get(i);
+            if (max == null || release.getDate().isAfter(max)) max = release.getDate();
+            prefixMax[i] = max;
+            byName.putIfAbsent(release.getName(), release);
+            byId.putIfAbsent(release.getId(), release);
+        }
+
+        this.inputOrdinals = new int[this.releases.size()];
+        boolean sortedInput = true;
+        for (int i = 0; i < inputOrdinals.length; i++) {
+            inputOrdinals[i] = ordinals.get(this.releases.get(i));
+            sortedInput &= inputOrdinals[i] == i;
+        }
+        this.chronologicalInput = sortedInput;
+    }
+
+    public static ReleaseTimeline of(List<Release> releases) {
+        return new ReleaseTimeline(releases);
+    }
+
+
+    // releases in the order they were given
+    public List<Release> getReleases() { return releases; }
+
+    // releases sorted by date, position i has ordinal i
+    public List<Release> chronological() { return chronological; }
+
+    public int size() { return releases.size(); }
+
+    public Release findByName(String name) { return byName.get(name); }
+
+    public Release findById(String id) { return byId.get(id); }
+
+    public int ordinalOf(Release release) {
+        Integer ordinal = ordinals.get(release);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    public Release getByOrdinal(int ordinal) { return chronological.get(ordinal); }
+
+    public Instant dateOf(int ordinal) { return chronological.get(ordinal).getDate(); }
+
+    // first ordinal dated at or after 'date', size() when every release is older
+    public int firstOnOrAfter(Instant date) {
+        int low = 0;
+        int high = chronological.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (chronological.get(mid).getDate().isBefore(date)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // releases with an ordinal in [from, to), in the order they were given (a view when the input was in date order)
+    public List<Release> between(int from, int to) {
+        if (from >= to) return List.of();
+        if (chronologicalInput) return chronological.subList(from, to);
+        List<Release> result = new ArrayList<>(to - from);
+        for (int i = 0; i < inputOrdinals.length; i++) {
+            if (inputOrdinals[i] >= from && inputOrdinals[i] < to) result.add(releases.get(i));
+        }
+        return result;
+    }
+
+
+    public Release findByDate(Instant date) {
+
+        //Finds the release that was active at a specific date: walking the list, the last release
+        //before the first one dated after 'date'. The first release after 'date' is also the first
+        //position where the running maximum passes 'date', and the running maximum is sorted.
+
+        int low = 0;
+        int high = prefixMax.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prefixMax[mid].isAfter(date)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low == 0 ? null : releases.get(low - 1);
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Streaming writer of Weka ARFF files, for the numeric and nominal attributes of the datasets.
+ * The header is declared first (relation, then attributes in column order), data() opens the @DATA section
+ * and the rows are appended value by value like with CsvWriter. Names and values are quoted only when ARFF needs it.
+ * The data rows written are recorded in the run metrics when the file is closed.
+ */
+public final class ArffWriter implements Closeable {
+
+    private final Writer out;
+    private final Path path;
+    private final RunMetrics metrics;
+    private boolean firstValue = true;
+    private long rows;
+
+    private ArffWriter(Path path, RunMetrics metrics) throws IOException {
+        this.path = path;
+        this.metrics = metrics;
+        this.out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    // <output dir of the project>/<fileName>, the directory is created if missing
+    public static ArffWriter open(RunContext context, String fileName) throws IOException {
+        Path dir = context.outputDir();
+        Files.createDirectories(dir);
+        return new ArffWriter(dir.resolve(fileName), context.metrics());
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+
+    public ArffWriter relation(String name) throws IOException {
+        out.write("@RELATION " + quote(name) + "\n\n");
+        return this;
+    }
+
+    public ArffWriter numeric(String name) throws IOException {
+        out.write("@ATTRIBUTE " + quote(name) + " NUMERIC\n");
+        return this;
+    }
+
+    public ArffWriter nominal(String name, String... values) throws IOException {
+        out.write("@ATTRIBUTE " + quote(name) + " {");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) out.write(',');
+            out.write(quote(values[i]));
+        }
+        out.write("}\n");
+        return this;
+    }
+
+    public ArffWriter data() throws IOException {
+        out.write("\n@DATA\n");
+        return this;
+    }
+
+    public ArffWriter value(long value) throws IOException {
+        separator();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    // a nominal value, it must be one of the values declared for the attribute
+    public ArffWriter value(String value) throws IOException {
+        separator();
+        out.write(quote(value));
+        return this;
+    }
+
+    public ArffWriter endRow() throws IOException {
+        out.write('\n');
+        firstValue = true;
+        rows++;
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+        if (metrics != null) metrics.rowsWritten(path, rows);
+    }
+
+
+    private void separator() throws IOException {
+        if (!firstValue) out.write(',');
+        firstValue = false;
+    }
+
+    private static String quote(String value) {
+        boolean plain = !value.isEmpty();
+        for (int i = 0; i < value.length() && plain; i++) {
+            char c = value.charAt(i);
+            plain = c > ' ' && c != ',' && c != '\'' && c != '"' && c != '%' && c != '{' && c != '}' && c != '\\' && c != '?';
+        }
+        return plain ? value : "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+}
@@ -0,0 +1,452 @@
+package org.example.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Column oriented, dictionary encoded table: the binary twin of a csv, meant to be loaded by a classifier.
+ * - INT columns are stored frame-of-reference: the column minimum once, then every value minus the minimum
+ *   on 0, 1, 2 or 4 bytes, the fewest that fit the range of the column (0 bytes: constant column)
+ * - STRING columns are stored as the dictionary of their distinct values plus one code per row, packed the same way
+ * Columns stay packed in memory as well. A table read from a file is mapped, not decoded: only the dictionaries are
+ * built on the heap, a value is unpacked when it is read, so a table of any size costs the memory of its distinct strings.
+ * Tables are filled row by row through a Builder and are immutable afterwards. A Builder given a file streams the rows
+ * to disk as they come and build() reads the file back, the rows are never all in memory.
+ */
+public final class ColumnarTable {
+
+    public enum Type { INT, STRING }
+
+    private static final int MAGIC = 0x4250434C; //"BPCL"
+    private static final int VERSION = 1;
+
+    private final String name;
+    private final int rows;
+    private final String[] columnNames;
+    private final Type[] types;
+    private final int[] bases;             //minimum of every column
+    private final int[] widths;            //bytes of every packed value: 0, 1, 2 or 4
+    private final ByteBuffer[] packed;     //value - base of an INT column, dictionary code - base of a STRING column
+    private final String[][] dictionaries; //null for INT columns
+    private final Path source;             //file the table is mapped from, null for a table built in memory
+
+    private ColumnarTable(String name, int rows, String[] columnNames, Type[] types, int[] bases, int[] widths,
+                          ByteBuffer[] packed, String[][] dictionaries, Path source) {
+        this.name = name;
+        this.rows = rows;
+        this.columnNames = columnNames;
+        this.types = types;
+        this.bases = bases;
+        this.widths = widths;
+        this.packed = packed;
+        this.dictionaries = dictionaries;
+        this.source = source;
+    }
+
+    // rows kept in memory until build()
+    public static Builder builder(String name) {
+        return new Builder(name, null);
+    }
+
+    // rows streamed to temporary files next to 'file', build() writes the table to 'file' and returns it read back
+    public static Builder builder(String name, Path file) {
+        return new Builder(name, file);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int rowCount() {
+        return rows;
+    }
+
+    // the file a table read with read() is mapped from: it must not be written while the table is in use
+    public Optional<Path> source() {
+        return Optional.ofNullable(source);
+    }
+
+    public int columnCount() {
+        return columnNames.length;
+    }
+
+    public String columnName(int column) {
+        return columnNames[column];
+    }
+
+    public Type type(int column) {
+        return types[column];
+    }
+
+    public int column(String columnName) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equals(columnName)) return i;
+        }
+        throw new IllegalArgumentException("No column " + columnName + " in " + name);
+    }
+
+    // value of an INT column, dictionary code of a STRING column
+    public int getInt(int column, int row) {
+        Objects.checkIndex(row, rows);
+        //absolute reads: a table can be read from several threads
+        return switch (widths[column]) {
+            case 0 -> bases[column];
+            case 1 -> bases[column] + (packed[column].get(row) & 0xFF);
+            case 2 -> bases[column] + (packed[column].getShort(row * 2) & 0xFFFF);
+            default -> bases[column] + packed[column].getInt(row * 4);
+        };
+    }
+
+    public String getString(int column, int row) {
+        int value = getInt(column, row);
+        return types[column] == Type.STRING ? dictionaries[column][value] : Integer.toString(value);
+    }
+
+    // distinct values of a STRING column, indexed by code in order of first appearance
+    public List<String> dictionary(int column) {
+        if (types[column] != Type.STRING) throw new IllegalArgumentException(columnNames[column] + " is not a STRING column");
+        return Collections.unmodifiableList(Arrays.asList(dictionaries[column]));
+    }
+
+
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            writeHeader(out, name, rows, columnNames.length);
+            byte[] chunk = new byte[1 << 16];
+            for (int c = 0; c < columnNames.length; c++) {
+                writeColumnHeader(out, columnNames[c], types[c], dictionaries[c]);
+                out.writeInt(bases[c]);
+                out.writeByte(widths[c]);
+                //the packed bytes as they are, copied a chunk at a time (a mapped column is never on the heap)
+                int length = rows * widths[c];
+                for (int offset = 0; offset < length; offset += chunk.length) {
+                    int count = Math.min(chunk.length, length - offset);
+                    packed[c].get(offset, chunk, 0, count);
+                    out.write(chunk, 0, count);
+                }
+            }
+        }
+    }
+
+    public static ColumnarTable read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            //the mapping outlives the channel: the columns are read from it for as long as the table is in use
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                if (buffer.getInt() != MAGIC) throw new IOException("Not a columnar table: " + path);
+                if (buffer.get() != VERSION) throw new IOException("Unsupported columnar table version: " + path);
+
+                String name = readString(buffer);
+                int rows = buffer.getInt();
+                int columns = buffer.getInt();
+                String[] columnNames = new String[columns];
+                Type[] types = new Type[columns];
+                int[] bases = new int[columns];
+                int[] widths = new int[columns];
+                ByteBuffer[] packed = new ByteBuffer[columns];
+                String[][] dictionaries = new String[columns][];
+                for (int c = 0; c < columns; c++) {
+                    columnNames[c] = readString(buffer);
+                    types[c] = Type.values()[buffer.get()];
+                    if (types[c] == Type.STRING) {
+                        dictionaries[c] = new String[buffer.getInt()];
+                        for (int i = 0; i < dictionaries[c].length; i++) dictionaries[c][i] = readString(buffer);
+                    }
+                    bases[c] = buffer.getInt();
+                    widths[c] = buffer.get();
+                    if (widths[c] != 0 && widths[c] != 1 && widths[c] != 2 && widths[c] != 4) {
+                        throw new IOException("Unknown column width " + widths[c] + ": " + path);
+                    }
+                    int length = Math.multiplyExact(rows, widths[c]);
+                    packed[c] = buffer.slice(buffer.position(), length);
+                    buffer.position(buffer.position() + length);
+                }
+                return new ColumnarTable(name, rows, columnNames, types, bases, widths, packed, dictionaries, path);
+            } catch (RuntimeException e) {
+                //BufferUnderflowException, bad type ordinal, column longer than the file...
+                throw new IOException("Corrupted columnar table: " + path, e);
+            }
+        }
+    }
+
+
+    private static void writeHeader(DataOutputStream out, String name, int rows, int columns) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeString(out, name);
+        out.writeInt(rows);
+        out.writeInt(columns);
+    }
+
+    private static void writeColumnHeader(DataOutputStream out, String columnName, Type type, String[] dictionary) throws IOException {
+        writeString(out, columnName);
+        out.writeByte(type.ordinal());
+        if (type == Type.STRING) {
+            out.writeInt(dictionary.length);
+            for (String value : dictionary) writeString(out, value);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // bytes of every value of a column with this range, the fewest that fit it
+    private static int width(int min, int max) {
+        long range = (long) max - min;
+        return range == 0 ? 0 : range <= 0xFF ? 1 : range <= 0xFFFF ? 2 : 4;
+    }
+
+
+    public static final class Builder implements Closeable {
+        private final String name;
+        private final Path file;
+        private final List<String> columnNames = new ArrayList<>();
+        private final List<Type> types = new ArrayList<>();
+        private final List<Map<String, Integer>> codes = new ArrayList<>();
+        private final List<List<String>> dictionaries = new ArrayList<>();
+        private final List<ColumnBuffer> columns = new ArrayList<>();
+        private boolean[] isSet = new boolean[0];
+        private int rows;
+        private int filled;
+
+        private Builder(String name, Path file) {
+            this.name = name;
+            this.file = file;
+        }
+
+        public Builder intColumn(String columnName) {
+            return addColumn(columnName, Type.INT);
+        }
+
+        public Builder stringColumn(String columnName) {
+            return addColumn(columnName, Type.STRING);
+        }
+
+        private Builder addColumn(String columnName, Type type) {
+            if (rows > 0 || filled > 0) throw new IllegalStateException("Columns must be declared before the first row");
+            columnNames.add(columnName);
+            types.add(type);
+            codes.add(type == Type.STRING ? new HashMap<>() : null);
+            dictionaries.add(type == Type.STRING ? new ArrayList<>() : null);
+            try {
+                columns.add(file == null ? new MemoryColumn() : new SpilledColumn(file));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            isSet = Arrays.copyOf(isSet, columnNames.size());
+            return this;
+        }
+
+        public Builder set(int column, int value) {
+            if (types.get(column) != Type.INT) throw new IllegalArgumentException(columnNames.get(column) + " is not an INT column");
+            store(column, value);
+            return this;
+        }
+
+        public Builder set(int column, String value) {
+            if (types.get(column) != Type.STRING) throw new IllegalArgumentException(columnNames.get(column) + " is not a STRING column");
+            List<String> dictionary = dictionaries.get(column);
+            Integer code = codes.get(column).computeIfAbsent(value == null ? "" : value, v -> {
+                dictionary.add(v);
+                return dictionary.size() - 1;
+            });
+            store(column, code);
+            return this;
+        }
+
+        // every column must have been set exactly once since the previous row
+        public Builder endRow() {
+            for (int c = 0; c < isSet.length; c++) {
+                if (!isSet[c]) throw new IllegalStateException("Row " + rows + " of " + name + " has no value for column " + columnNames.get(c));
+            }
+            Arrays.fill(isSet, false);
+            rows++;
+            filled = 0;
+            return this;
+        }
+
+        public int rowCount() {
+            return rows;
+        }
+
+        public ColumnarTable build() throws IOException {
+            if (filled != 0) throw new IllegalStateException("Last row of " + name + " was not ended");
+            int count = columnNames.size();
+            String[][] dictionaryArrays = new String[count][];
+            for (int c = 0; c < count; c++) {
+                if (types.get(c) == Type.STRING) dictionaryArrays[c] = dictionaries.get(c).toArray(new String[0]);
+            }
+
+            if (file == null) {
+                int[] bases = new int[count];
+                int[] widths = new int[count];
+                ByteBuffer[] packed = new ByteBuffer[count];
+                for (int c = 0; c < count; c++) {
+                    ColumnBuffer column = columns.get(c);
+                    bases[c] = column.min(rows);
+                    widths[c] = width(bases[c], column.max(rows));
+                    packed[c] = ByteBuffer.allocate(rows * widths[c]);
+                    column.pack(new DataOutputStream(new ByteBufferOutput(packed[c])), rows, bases[c], widths[c]);
+                }
+                return new ColumnarTable(name, rows, columnNames.toArray(new String[0]), types.toArray(new Type[0]),
+                        bases, widths, packed, dictionaryArrays, null);
+            }
+
+            //moved in place only when complete, a failed run never leaves half a table behind
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                writeHeader(out, name, rows, count);
+                for (int c = 0; c < count; c++) {
+                    ColumnBuffer column = columns.get(c);
+                    writeColumnHeader(out, columnNames.get(c), types.get(c), dictionaryArrays[c]);
+                    int base = column.min(rows);
+                    int width = width(base, column.max(rows));
+                    out.writeInt(base);
+                    out.writeByte(width);
+                    column.pack(out, rows, base, width);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            close();
+            return read(file);
+        }
+
+        // removes the temporary files of a Builder given a file; the built table does not need them
+        @Override
+        public void close() throws IOException {
+            for (ColumnBuffer column : columns) column.close();
+        }
+
+        private void store(int column, int value) {
+            if (isSet[column]) throw new IllegalStateException("Column " + columnNames.get(column) + " set twice in row " + rows + " of " + name);
+            try {
+                columns.get(column).add(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            isSet[column] = true;
+            filled++;
+        }
+    }
+
+    // the values of one column while the table is filled, with their range
+    private abstract static class ColumnBuffer implements Closeable {
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+
+        void add(int value) throws IOException {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        int min(int rows) {
+            return rows == 0 ? 0 : min;
+        }
+
+        int max(int rows) {
+            return rows == 0 ? 0 : max;
+        }
+
+        // writes every value minus base on width bytes
+        abstract void pack(DataOutputStream out, int rows, int base, int width) throws IOException;
+
+        static void packValue(DataOutputStream out, int delta, int width) throws IOException {
+            //an unsigned value, wraps around for ranges wider than Integer.MAX_VALUE
+            switch (width) {
+                case 0 -> { }
+                case 1 -> out.writeByte(delta);
+                case 2 -> out.writeShort(delta);
+                default -> out.writeInt(delta);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static final class MemoryColumn extends ColumnBuffer {
+        private int[] values = new int[1024];
+        private int size;
+
+        @Override
+        void add(int value) throws IOException {
+            super.add(value);
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        @Override
+        void pack(DataOutputStream out, int rows, int base, int width) throws IOException {
+            for (int i = 0; i < rows; i++) packValue(out, values[i] - base, width);
+        }
+    }
+
+    // values written to a temporary file as they come, packed once their range is known
+    private static final class SpilledColumn extends ColumnBuffer {
+        private final Path spill;
+        private final DataOutputStream out;
+
+        SpilledColumn(Path table) throws IOException {
+            Path dir = table.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            this.spill = Files.createTempFile(dir, table.getFileName() + ".", ".column");
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spill), 1 << 16));
+        }
+
+        @Override
+        void add(int value) throws IOException {
+            super.add(value);
+            out.writeInt(value);
+        }
+
+        @Override
+        void pack(DataOutputStream target, int rows, int base, int width) throws IOException {
+            out.flush();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(spill), 1 << 16))) {
+                for (int i = 0; i < rows; i++) packValue(target, in.readInt() - base, width);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+            Files.deleteIfExists(spill);
+        }
+    }
+
+    private static final class ByteBufferOutput extends OutputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferOutput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            buffer.put(bytes, offset, length);
+        }
+    }
+}
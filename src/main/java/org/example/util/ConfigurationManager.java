@@ -2,23 +2,36 @@ package org.example.util;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Map;
 import java.util.Properties;
 
 public class ConfigurationManager {
 
-    private static ConfigurationManager instance;
+    /** Immutable view of config.properties. getInstance() is the file itself; forProject() derives the
+     *  configuration of one project of a batch run: project.name is set, and every "<PROJECT>.<key>" entry
+     *  of the file overrides "<key>" (e.g. BOOKKEEPER.git.path=...). Safe to share between threads.
+     */
+
     private final Properties properties;
 
-    // Singleton pattern
-    private ConfigurationManager() {
+    // Singleton pattern: the holder class is initialized once, on first use, by the class loader
+    private static final class Holder {
+        private static final ConfigurationManager INSTANCE = new ConfigurationManager(loadFile());
+    }
+
+    private ConfigurationManager(Properties properties) {
+        this.properties = properties;
+    }
+
+    private static Properties loadFile() {
 
-        properties = new Properties();
+        Properties properties = new Properties();
 
         String configFile = "config.properties";
-        try (InputStream input = getClass().getClassLoader().getResourceAsStream(configFile)) {
+        try (InputStream input = ConfigurationManager.class.getClassLoader().getResourceAsStream(configFile)) {
             if (input == null) {
                 Printer.errorPrint("Unable to find " + configFile);
-                return;
+                return properties;
             }
             properties.load(input);
 
@@ -26,18 +39,54 @@ public class ConfigurationManager {
             Printer.errorPrint("Unable to open " + configFile);
             ex.printStackTrace();
         }
+        return properties;
     }
 
 
     public static ConfigurationManager getInstance() {
-        if (instance == null) {
-            instance = new ConfigurationManager();
+        return Holder.INSTANCE;
+    }
+
+    // configuration of one project: the project specific entries win over the common ones
+    public ConfigurationManager forProject(String projectName) {
+        Properties projectProperties = new Properties();
+        projectProperties.putAll(properties);
+        String prefix = projectName + ".";
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                projectProperties.setProperty(key.substring(prefix.length()), properties.getProperty(key));
+            }
         }
-        return instance;
+        projectProperties.setProperty("project.name", projectName);
+        return new ConfigurationManager(projectProperties);
+    }
+
+    // same configuration with some entries replaced, e.g. a test pointing the pipeline to a temporary directory
+    public ConfigurationManager with(Map<String, String> overrides) {
+        Properties changed = new Properties();
+        changed.putAll(properties);
+        overrides.forEach(changed::setProperty);
+        return new ConfigurationManager(changed);
     }
 
 
     public String getProperty(String key) {
         return properties.getProperty(key);
     }
-}
\ No newline at end of file
+
+    public String getProperty(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue);
+    }
+
+    //numeric settings fall back to the default when missing or malformed
+    public int getIntProperty(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            Printer.errorPrint("Invalid value for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
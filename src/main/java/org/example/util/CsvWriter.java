@@ -0,0 +1,126 @@
+package org.example.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming RFC 4180 CSV writer shared by every output file of the project.
+ * - UTF-8, large buffers, rows are never flushed one by one
+ * - a field is quoted only when it contains a comma, a quote, CR or LF; quotes inside are doubled
+ * - rows end with CRLF
+ * - with csv.gzip=true in config.properties the files are written gzip compressed, with a ".gz" suffix
+ * Fields are appended one at a time and endRow() closes the row, so no row is ever built as a String.
+ * The rows written (header excluded) are recorded in the run metrics when the file is closed.
+ */
+public final class CsvWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Writer out;
+    private final Path path;
+    private final RunMetrics metrics;
+    private boolean firstField = true;
+    private long rows;
+
+    private CsvWriter(Path path, boolean gzip, RunMetrics metrics) throws IOException {
+        this.path = path;
+        this.metrics = metrics;
+        OutputStream stream = new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE);
+        if (gzip) {
+            stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+        }
+        this.out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    // <output dir of the project>/<fileName>, the directory is created if missing; csv.gzip is read from the project configuration
+    public static CsvWriter open(RunContext context, String fileName) throws IOException {
+        boolean gzip = Boolean.parseBoolean(context.config().getProperty("csv.gzip", "false"));
+        Path dir = context.outputDir();
+        Files.createDirectories(dir);
+        return new CsvWriter(dir.resolve(gzip ? fileName + ".gz" : fileName), gzip, context.metrics());
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+
+    public CsvWriter header(String... names) throws IOException {
+        for (String name : names) field(name);
+        newLine();
+        return this;
+    }
+
+    public CsvWriter row(Object... values) throws IOException {
+        for (Object value : values) field(value == null ? "" : value.toString());
+        endRow();
+        return this;
+    }
+
+    public CsvWriter field(String value) throws IOException {
+        separator();
+        if (value == null || value.isEmpty()) return this;
+
+        if (needsQuotes(value)) {
+            out.write('"');
+            int start = 0;
+            int quote;
+            while ((quote = value.indexOf('"', start)) != -1) {
+                out.write(value, start, quote - start + 1);
+                out.write('"');
+                start = quote + 1;
+            }
+            out.write(value, start, value.length() - start);
+            out.write('"');
+        } else {
+            out.write(value);
+        }
+        return this;
+    }
+
+    public CsvWriter field(long value) throws IOException {
+        separator();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    public CsvWriter field(double value) throws IOException {
+        separator();
+        out.write(Double.toString(value));
+        return this;
+    }
+
+    public CsvWriter endRow() throws IOException {
+        newLine();
+        rows++;
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+        if (metrics != null) metrics.rowsWritten(path, rows);
+    }
+
+
+    private void newLine() throws IOException {
+        out.write("\r\n");
+        firstField = true;
+    }
+
+    private void separator() throws IOException {
+        if (!firstField) out.write(',');
+        firstField = false;
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,270 @@
+package org.example.util;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class HttpResponseCache {
+
+    /** Class responsibility: on-disk cache for the JIRA REST responses, configured by the project being run
+     *  (instances of the same http.cache.dir share the cache, safely across threads).
+     *  - bodies are stored once, under the SHA-256 of their content (objects/)
+     *  - every normalized request URL has an index entry pointing to its body, with fetch time, ETag and Last-Modified (index/)
+     *  - entries younger than http.cache.ttl.seconds are served without touching the network,
+     *    older ones are revalidated with a conditional request (a 304 only refreshes the entry)
+     *  - with http.cache.offline=true the network is never used: a missing entry is an error
+     *  - a body replaced by a newer one is deleted once no index entry points to it any more
+     *  - requests time out (http.connect.timeout.seconds, http.read.timeout.seconds), a stalled socket never hangs a fetch
+     *  - given a RunMetrics, every request is recorded with its source (network, not-modified, cache), size and latency
+     */
+
+    private static final Logger LOGGER = Logger.getLogger(HttpResponseCache.class.getName());
+
+    private final Path indexDir;
+    private final Path objectsDir;
+    private final long ttlMillis;
+    private final boolean offline;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    //a body reused less than this long ago may be about to get its index entry: never pruned
+    private static final long PRUNE_GRACE_MILLIS = 10 * 60 * 1000L;
+
+    public HttpResponseCache(ConfigurationManager config) {
+        Path root = Path.of(config.getProperty("http.cache.dir", ".cache/http"));
+        this.indexDir = root.resolve("index");
+        this.objectsDir = root.resolve("objects");
+        this.ttlMillis = config.getIntProperty("http.cache.ttl.seconds", 86400) * 1000L;
+        this.offline = Boolean.parseBoolean(config.getProperty("http.cache.offline", "false"));
+        this.connectTimeoutMillis = Math.max(1, config.getIntProperty("http.connect.timeout.seconds", 30)) * 1000;
+        this.readTimeoutMillis = Math.max(1, config.getIntProperty("http.read.timeout.seconds", 120)) * 1000;
+    }
+
+
+    public Reader openReader(String url) throws IOException {
+        return openReader(url, false);
+    }
+
+    //revalidate=true skips the TTL: the server is always asked (conditionally) if our copy is still good
+    public Reader openReader(String url, boolean revalidate) throws IOException {
+        return openReader(url, revalidate, null);
+    }
+
+    // same, the request is recorded in metrics (where the body came from, its size, how long it took)
+    public Reader openReader(String url, boolean revalidate, RunMetrics metrics) throws IOException {
+        return new BufferedReader(new InputStreamReader(open(url, revalidate, metrics), StandardCharsets.UTF_8));
+    }
+
+    public InputStream open(String url, boolean revalidate) throws IOException {
+        return open(url, revalidate, null);
+    }
+
+    public InputStream open(String url, boolean revalidate, RunMetrics metrics) throws IOException {
+        long start = System.nanoTime();
+        try {
+            Response response = fetch(url, revalidate);
+            if (metrics != null) {
+                metrics.httpRequest(url, response.source(), Files.size(response.body()), System.nanoTime() - start);
+            }
+            return Files.newInputStream(response.body());
+        } catch (IOException e) {
+            if (metrics != null) metrics.httpRequest(url, "failed", 0, System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    // body: the stored copy of the response; source: network, not-modified or cache
+    private record Response(Path body, String source) {}
+
+    private Response fetch(String url, boolean revalidate) throws IOException {
+
+        String normalizedUrl = normalize(url);
+        String key = sha256(normalizedUrl.getBytes(StandardCharsets.UTF_8));
+        Path indexFile = indexDir.resolve(key + ".properties");
+        Properties entry = readEntry(indexFile);
+        Path body = entry != null ? bodyPath(entry.getProperty("body")) : null;
+        boolean cached = body != null && Files.exists(body);
+
+        if (offline) {
+            if (!cached) throw new FileNotFoundException("Offline mode: no cached response for " + normalizedUrl);
+            return new Response(body, "cache");
+        }
+
+        long now = System.currentTimeMillis();
+        if (cached && !revalidate && now - Long.parseLong(entry.getProperty("fetchedAt", "0")) < ttlMillis) {
+            return new Response(body, "cache");
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) toUri(url).toURL().openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        if (cached) {
+            //conditional revalidation, the server answers 304 if our copy is still good
+            if (entry.getProperty("etag") != null) connection.setRequestProperty("If-None-Match", entry.getProperty("etag"));
+            if (entry.getProperty("lastModified") != null) connection.setRequestProperty("If-Modified-Since", entry.getProperty("lastModified"));
+        }
+
+        try {
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached) {
+                entry.setProperty("fetchedAt", Long.toString(now));
+                writeEntry(indexFile, entry);
+                return new Response(body, "not-modified");
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Server returned HTTP " + status + " for " + normalizedUrl);
+            }
+
+            Properties fresh = new Properties();
+            fresh.setProperty("url", normalizedUrl);
+            fresh.setProperty("fetchedAt", Long.toString(now));
+            if (connection.getHeaderField("ETag") != null) fresh.setProperty("etag", connection.getHeaderField("ETag"));
+            if (connection.getHeaderField("Last-Modified") != null) fresh.setProperty("lastModified", connection.getHeaderField("Last-Modified"));
+
+            try (InputStream in = connection.getInputStream()) {
+                fresh.setProperty("body", store(in));
+            }
+            writeEntry(indexFile, fresh);
+            if (cached && !entry.getProperty("body").equals(fresh.getProperty("body"))) {
+                pruneIfUnreferenced(entry.getProperty("body"));
+            }
+            return new Response(bodyPath(fresh.getProperty("body")), "network");
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+
+    private String store(InputStream in) throws IOException {
+
+        //the body is streamed to a temp file while it is hashed, then moved under its content hash
+        Files.createDirectories(objectsDir);
+        Path tmp = Files.createTempFile(objectsDir, "download", ".tmp");
+        try {
+            MessageDigest digest = newDigest();
+            try (InputStream digesting = new DigestInputStream(in, digest)) {
+                Files.copy(digesting, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = bodyPath(hash);
+            if (Files.exists(target)) {
+                //same content already stored for another url or an older fetch; touched, so it is not pruned meanwhile
+                try {
+                    Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+                    return hash;
+                } catch (NoSuchFileException e) {
+                    //pruned in the meantime: stored again below
+                }
+            }
+            Files.createDirectories(target.getParent());
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return hash;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // bodies are shared by content: the replaced one goes only when no entry uses it (one scan of the index,
+    // done only when a revalidated response changed)
+    private void pruneIfUnreferenced(String hash) {
+        Path body = bodyPath(hash);
+        if (body == null) return;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(indexDir, "*.properties")) {
+            for (Path indexFile : entries) {
+                Properties other = readEntry(indexFile);
+                if (other != null && hash.equals(other.getProperty("body"))) return;
+            }
+            if (Files.getLastModifiedTime(body).toMillis() < System.currentTimeMillis() - PRUNE_GRACE_MILLIS) {
+                Files.deleteIfExists(body);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot prune cached body {0}", hash);
+        }
+    }
+
+    private Path bodyPath(String hash) {
+        if (hash == null || hash.length() < 3) return null;
+        return objectsDir.resolve(hash.substring(0, 2)).resolve(hash.substring(2) + ".body");
+    }
+
+    private Properties readEntry(Path indexFile) {
+        if (!Files.exists(indexFile)) return null;
+        Properties entry = new Properties();
+        try (Reader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            entry.load(reader);
+            return entry;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Ignoring unreadable cache entry {0}", indexFile);
+            return null;
+        }
+    }
+
+    private void writeEntry(Path indexFile, Properties entry) throws IOException {
+        //written aside and moved, so a concurrent reader never sees half an entry
+        Files.createDirectories(indexDir);
+        Path tmp = Files.createTempFile(indexDir, "entry", ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            entry.store(writer, null);
+        }
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    static String normalize(String url) throws IOException {
+
+        //same request, same key: lower case scheme and host, no default port, no fragment, sorted query parameters
+        URI uri = toUri(url);
+        String scheme = uri.getScheme() == null ? "https" : uri.getScheme().toLowerCase();
+        String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase();
+        int port = uri.getPort();
+        boolean defaultPort = port == -1 || (scheme.equals("http") && port == 80) || (scheme.equals("https") && port == 443);
+
+        StringBuilder sb = new StringBuilder(scheme).append("://").append(host);
+        if (!defaultPort) sb.append(':').append(port);
+        sb.append(uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath());
+
+        String query = uri.getRawQuery();
+        if (query != null && !query.isEmpty()) {
+            String[] params = query.split("&");
+            Arrays.sort(params);
+            sb.append('?').append(String.join("&", params));
+        }
+        return sb.toString();
+    }
+
+    private static URI toUri(String url) throws IOException {
+        try {
+            return new URI(url);
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid url: " + url, e);
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        return HexFormat.of().formatHex(newDigest().digest(data));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
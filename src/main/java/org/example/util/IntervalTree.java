@@ -0,0 +1,63 @@
+package org.example.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Static interval tree over closed integer intervals [start, end], e.g. the line ranges of the methods of a file.
+ * The items are sorted by start once and seen as an implicit balanced tree (the middle of every range is its root);
+ * every node also knows the largest end of its subtree, so a query skips the subtrees that cannot overlap.
+ * Finding the k items overlapping an interval costs O(log n + k).
+ */
+public final class IntervalTree<T> {
+
+    private final List<T> items;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] maxEnds;
+
+    public IntervalTree(List<T> values, ToIntFunction<T> start, ToIntFunction<T> end) {
+        this.items = new ArrayList<>(values);
+        this.items.sort(Comparator.comparingInt(start));
+        int n = items.size();
+        this.starts = new int[n];
+        this.ends = new int[n];
+        this.maxEnds = new int[n];
+        for (int i = 0; i < n; i++) {
+            starts[i] = start.applyAsInt(items.get(i));
+            ends[i] = end.applyAsInt(items.get(i));
+        }
+        buildMaxEnds(0, n);
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    // every item whose interval shares at least one point with [from, to]
+    public void overlapping(int from, int to, Consumer<T> consumer) {
+        query(0, items.size(), from, to, consumer);
+    }
+
+    private int buildMaxEnds(int low, int high) {
+        if (low >= high) return Integer.MIN_VALUE;
+        int mid = (low + high) >>> 1;
+        int max = Math.max(ends[mid], Math.max(buildMaxEnds(low, mid), buildMaxEnds(mid + 1, high)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    private void query(int low, int high, int from, int to, Consumer<T> consumer) {
+        if (low >= high) return;
+        int mid = (low + high) >>> 1;
+        if (maxEnds[mid] < from) return; //everything below ends before the query starts
+
+        query(low, mid, from, to, consumer);
+        if (starts[mid] > to) return; //this node and its right subtree start after the query ends
+        if (ends[mid] >= from) consumer.accept(items.get(mid));
+        query(mid + 1, high, from, to, consumer);
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Multiset of doubles drawn from a universe known up front (e.g. the proportion ratios of all the tickets),
+ * kept as counts in a Fenwick tree over the sorted distinct values of the universe.
+ * add, remove and the k-th smallest value cost O(log n), so a median can be read after every insertion
+ * or removal (growing history, sliding window) without sorting anything again.
+ * The running sum makes the mean O(1) as well.
+ */
+public final class OrderStatistics {
+
+    private final double[] values; //sorted distinct values of the universe
+    private final int[] tree;      //1-based Fenwick tree of the counts
+    private final int highestBit;
+    private int size;
+    private double sum;
+
+    public OrderStatistics(double[] universe) {
+        double[] sorted = universe.clone();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (distinct == 0 || Double.compare(sorted[i], sorted[distinct - 1]) != 0) sorted[distinct++] = sorted[i];
+        }
+        this.values = Arrays.copyOf(sorted, distinct);
+        this.tree = new int[distinct + 1];
+        this.highestBit = distinct == 0 ? 0 : Integer.highestOneBit(distinct);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void add(double value) {
+        update(indexOf(value), 1);
+        size++;
+        sum += value;
+    }
+
+    // removes one occurrence, the value must be in the multiset
+    public void remove(double value) {
+        int index = indexOf(value);
+        if (count(index) == 0) throw new NoSuchElementException("Value not in the multiset: " + value);
+        update(index, -1);
+        size--;
+        sum -= value;
+    }
+
+    // k-th smallest value, 0-based
+    public double kth(int k) {
+        if (k < 0 || k >= size) throw new IndexOutOfBoundsException("k=" + k + ", size=" + size);
+        //binary lifting: the largest position whose prefix count is <= k, the value is the next one
+        int position = 0;
+        int remaining = k;
+        for (int step = highestBit; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < tree.length && tree[next] <= remaining) {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        return values[position];
+    }
+
+    // mean of the two middle values for an even size, like the median of a sorted list
+    public double median() {
+        if (size == 0) throw new NoSuchElementException("Empty multiset");
+        int middle = size / 2;
+        return size % 2 == 1 ? kth(middle) : (kth(middle - 1) + kth(middle)) / 2.0;
+    }
+
+    public double mean() {
+        if (size == 0) throw new NoSuchElementException("Empty multiset");
+        return sum / size;
+    }
+
+
+    private int indexOf(double value) {
+        int index = Arrays.binarySearch(values, value);
+        if (index < 0) throw new IllegalArgumentException("Value outside the universe: " + value);
+        return index + 1;
+    }
+
+    private int count(int index) {
+        return prefix(index) - prefix(index - 1);
+    }
+
+    private int prefix(int index) {
+        int total = 0;
+        for (int i = index; i > 0; i -= i & -i) total += tree[i];
+        return total;
+    }
+
+    private void update(int index, int delta) {
+        for (int i = index; i < tree.length; i += i & -i) tree[i] += delta;
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.util;
+
+import java.nio.file.Path;
+import java.util.OptionalDouble;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Everything a pipeline run needs from the outside, handed to every controller instead of the global singleton.
+ * - config: the configuration of the project (see ConfigurationManager.forProject)
+ * - workers: pool shared by the CPU bound stages (churn, method extraction) of all the projects of a batch;
+ *   null in a standalone run, where every stage sizes its own pool from the configuration
+ * - coldStartP: proportion value borrowed from the other projects of a batch, used when the project has
+ *   too few tickets with a known IV (proportion.coldstart.min); empty in a standalone run
+ * - metrics: measurements of the run of the project, the source of its JSON run report
+ * Immutable (metrics aside), a batch builds one per project.
+ */
+public record RunContext(ConfigurationManager config, ForkJoinPool workers, OptionalDouble coldStartP, RunMetrics metrics) {
+
+    // single project run, configured by config.properties
+    public static RunContext standalone() {
+        return new RunContext(ConfigurationManager.getInstance(), null, OptionalDouble.empty(), new RunMetrics());
+    }
+
+    public String projectName() {
+        return config.getProperty("project.name");
+    }
+
+    // where the output files of the project go: <output.dir>/<project>
+    public Path outputDir() {
+        return Path.of(config.getProperty("output.dir", "src/main/outputFiles"), projectName());
+    }
+
+    public RunContext withColdStartP(OptionalDouble p) {
+        return new RunContext(config, workers, p, metrics);
+    }
+}
@@ -0,0 +1,219 @@
+package org.example.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Measurements of one pipeline run of a project, written as a JSON report when the run ends (see writeReport).
+ * - stages: wall time, CPU time and bytes allocated by the thread evaluating the stage, and how it ended
+ *   (ran, loaded from its checkpoint, skipped, failed). Inputs are evaluated before a stage starts, so the numbers
+ *   are the stage's own. Work a stage hands to a pool (churn, method extraction, JIRA pages) shows in its wall time
+ *   and in the process totals, not in the CPU of the stage thread.
+ * - http: every request, with where the body came from (network, not modified, cache), its size and latency;
+ *   bytes counts every body read, networkBytes only the ones downloaded
+ * - throughput: items per second of the main loops (commits walked, file changes, methods)
+ * - files: rows written to every output file
+ * Process CPU and allocation totals cover the whole JVM: in a batch they include the projects running alongside.
+ * Every stage is also a JFR event (org.example.Stage): a recording started with -XX:StartFlightRecording lines the
+ * stages up with the JVM own events (allocation samples, GC, socket reads).
+ * Thread safe, stages and requests are recorded from several threads.
+ */
+public final class RunMetrics {
+
+    private static final java.lang.management.ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final List<StageRecord> stages = new ArrayList<>();
+    private final List<HttpRecord> requests = new ArrayList<>();
+    private final Map<String, long[]> throughput = new LinkedHashMap<>(); // name -> {items, nanos}
+    private final Map<String, Long> rows = new LinkedHashMap<>();
+
+    private Instant startedAt = Instant.now();
+    private long startNanos = System.nanoTime();
+    private long startProcessCpu = processCpuNanos();
+    private long startAllocated = totalAllocatedBytes();
+
+    private record StageRecord(String name, String outcome, String thread, long wallNanos, long cpuNanos, long allocatedBytes) {}
+
+    private record HttpRecord(String url, String source, long bytes, long latencyNanos) {}
+
+    @Name("org.example.Stage")
+    @Label("Pipeline Stage")
+    @Category("Bug Prediction")
+    static final class StageEvent extends jdk.jfr.Event {
+        @Label("Stage")
+        String stage;
+        @Label("Outcome")
+        String outcome;
+    }
+
+    // a stage being measured, see startStage
+    public final class Span {
+        private final String name;
+        private final StageEvent event = new StageEvent();
+        private final long startNanos = System.nanoTime();
+        private final long startCpu = THREADS.getCurrentThreadCpuTime();
+        private final long startAllocated = currentThreadAllocatedBytes();
+
+        private Span(String name) {
+            this.name = name;
+            event.begin();
+        }
+
+        public void end(String outcome) {
+            long cpu = THREADS.getCurrentThreadCpuTime();
+            long allocated = currentThreadAllocatedBytes();
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = name;
+                event.outcome = outcome;
+                event.commit();
+            }
+            //-1: not measurable on this thread (e.g. a virtual thread)
+            StageRecord record = new StageRecord(name, outcome, Thread.currentThread().getName(), System.nanoTime() - startNanos,
+                    cpu < 0 || startCpu < 0 ? -1 : cpu - startCpu,
+                    allocated < 0 || startAllocated < 0 ? -1 : allocated - startAllocated);
+            synchronized (RunMetrics.this) {
+                stages.add(record);
+            }
+        }
+    }
+
+
+    // the run starts now: wall time, process CPU and allocation are counted from here
+    public synchronized void runStarted() {
+        startedAt = Instant.now();
+        startNanos = System.nanoTime();
+        startProcessCpu = processCpuNanos();
+        startAllocated = totalAllocatedBytes();
+    }
+
+    // on the thread that evaluates the stage, end(outcome) on the same thread
+    public Span startStage(String name) {
+        return new Span(name);
+    }
+
+    // source: network, not-modified, cache or failed
+    public synchronized void httpRequest(String url, String source, long bytes, long latencyNanos) {
+        requests.add(new HttpRecord(url, source, bytes, latencyNanos));
+    }
+
+    // items processed in a loop and the time it took, added up when the same loop is recorded more than once
+    public synchronized void throughput(String name, long items, long nanos) {
+        long[] total = throughput.computeIfAbsent(name, key -> new long[2]);
+        total[0] += items;
+        total[1] += nanos;
+    }
+
+    // a file written again (e.g. the tickets csv once the versions are estimated) keeps the rows of the last write
+    public synchronized void rowsWritten(Path file, long count) {
+        rows.put(file.getFileName().toString(), count);
+    }
+
+
+    public synchronized JSONObject toJson(String project, Throwable failure) {
+        JSONObject report = new JSONObject();
+        report.put("project", project);
+        report.put("status", failure == null ? "done" : "failed");
+        //an exception without a message (e.g. a NullPointerException) is reported by its type
+        if (failure != null) report.put("error", failure.getMessage() != null ? failure.getMessage() : failure.toString());
+        report.put("startedAt", startedAt.toString());
+        report.put("wallMs", millis(System.nanoTime() - startNanos));
+        long processCpu = processCpuNanos();
+        if (processCpu >= 0 && startProcessCpu >= 0) report.put("processCpuMs", millis(processCpu - startProcessCpu));
+        long allocated = totalAllocatedBytes();
+        if (allocated >= 0 && startAllocated >= 0) report.put("allocatedBytes", allocated - startAllocated);
+
+        JSONArray stageArray = new JSONArray();
+        StageRecord dominant = null;
+        for (StageRecord stage : stages) {
+            JSONObject json = new JSONObject()
+                    .put("name", stage.name())
+                    .put("outcome", stage.outcome())
+                    .put("thread", stage.thread())
+                    .put("wallMs", millis(stage.wallNanos()));
+            if (stage.cpuNanos() >= 0) json.put("cpuMs", millis(stage.cpuNanos()));
+            if (stage.allocatedBytes() >= 0) json.put("allocatedBytes", stage.allocatedBytes());
+            stageArray.put(json);
+            if (dominant == null || stage.wallNanos() > dominant.wallNanos()) dominant = stage;
+        }
+        report.put("stages", stageArray);
+        if (dominant != null) report.put("dominantStage", dominant.name());
+
+        JSONArray pages = new JSONArray();
+        long bytes = 0;
+        long networkBytes = 0;
+        long network = 0;
+        long[] latencies = new long[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            HttpRecord request = requests.get(i);
+            pages.put(new JSONObject()
+                    .put("url", request.url())
+                    .put("source", request.source())
+                    .put("bytes", request.bytes())
+                    .put("latencyMs", millis(request.latencyNanos())));
+            bytes += request.bytes();
+            if (!request.source().equals("cache")) network++;
+            if (request.source().equals("network")) networkBytes += request.bytes();
+            latencies[i] = request.latencyNanos();
+        }
+        Arrays.sort(latencies);
+        JSONObject http = new JSONObject()
+                .put("requests", requests.size())
+                .put("networkRequests", network)
+                .put("bytes", bytes)
+                .put("networkBytes", networkBytes)
+                .put("pages", pages);
+        if (latencies.length > 0) {
+            http.put("latencyMedianMs", millis(latencies[(latencies.length - 1) / 2]));
+            http.put("latencyMaxMs", millis(latencies[latencies.length - 1]));
+        }
+        report.put("http", http);
+
+        JSONObject loops = new JSONObject();
+        throughput.forEach((name, total) -> loops.put(name, new JSONObject()
+                .put("items", total[0])
+                .put("ms", millis(total[1]))
+                .put("perSecond", total[1] == 0 ? 0 : Math.round(total[0] * 1e9 / total[1]))));
+        report.put("throughput", loops);
+
+        JSONObject files = new JSONObject();
+        rows.forEach(files::put);
+        report.put("rowsWritten", files);
+        return report;
+    }
+
+    // failure: what stopped the run, null when it completed
+    public void writeReport(Path file, String project, Throwable failure) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.writeString(file, toJson(project, failure).toString(2), StandardCharsets.UTF_8);
+    }
+
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1e4) / 100.0;
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        return THREADS instanceof com.sun.management.ThreadMXBean threads ? threads.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private static long totalAllocatedBytes() {
+        return THREADS instanceof com.sun.management.ThreadMXBean threads ? threads.getTotalThreadAllocatedBytes() : -1;
+    }
+
+    private static long processCpuNanos() {
+        return ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os
+                ? os.getProcessCpuTime() : -1;
+    }
+}
@@ -0,0 +1,136 @@
+package org.example.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Codecs of the stage values checkpointed by StageGraph: plain DataOutput streams, maps keep their iteration order.
+ */
+public final class StageCodecs {
+
+    private StageCodecs() {}
+
+    private interface Writer<T> {
+        void write(T value, DataOutputStream out) throws IOException;
+    }
+
+    private interface Reader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private static <T> StageGraph.Codec<T> of(Writer<T> writer, Reader<T> reader) {
+        return new StageGraph.Codec<>() {
+            @Override
+            public void write(T value, Path path) throws IOException {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+                    writer.write(value, out);
+                }
+            }
+
+            @Override
+            public T read(Path path) throws IOException {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+                    return reader.read(in);
+                }
+            }
+        };
+    }
+
+
+    public static StageGraph.Codec<double[]> doubles() {
+        return of((values, out) -> {
+            out.writeInt(values.length);
+            for (double value : values) out.writeDouble(value);
+        }, in -> {
+            double[] values = new double[in.readInt()];
+            for (int i = 0; i < values.length; i++) values[i] = in.readDouble();
+            return values;
+        });
+    }
+
+    // e.g. the commit ordinals linked to every ticket
+    public static StageGraph.Codec<Map<String, int[]>> keyToInts() {
+        return of((map, out) -> {
+            out.writeInt(map.size());
+            for (Map.Entry<String, int[]> entry : map.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().length);
+                for (int value : entry.getValue()) out.writeInt(value);
+            }
+        }, in -> {
+            int size = in.readInt();
+            Map<String, int[]> map = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                String key = readString(in);
+                int[] values = new int[in.readInt()];
+                for (int j = 0; j < values.length; j++) values[j] = in.readInt();
+                map.put(key, values);
+            }
+            return map;
+        });
+    }
+
+    // e.g. the methods touched by every ticket; the strings repeat a lot, every distinct one is written once
+    public static StageGraph.Codec<Map<String, Set<String>>> keyToStrings() {
+        return of((map, out) -> {
+            Map<String, Integer> ids = new HashMap<>();
+            List<String> strings = new ArrayList<>();
+            for (Set<String> values : map.values()) {
+                for (String value : values) {
+                    if (ids.putIfAbsent(value, strings.size()) == null) strings.add(value);
+                }
+            }
+            out.writeInt(strings.size());
+            for (String value : strings) writeString(out, value);
+            out.writeInt(map.size());
+            for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (String value : entry.getValue()) out.writeInt(ids.get(value));
+            }
+        }, in -> {
+            String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) strings[i] = readString(in);
+            int size = in.readInt();
+            Map<String, Set<String>> map = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                String key = readString(in);
+                int count = in.readInt();
+                Set<String> values = new HashSet<>();
+                for (int j = 0; j < count; j++) values.add(strings[in.readInt()]);
+                map.put(key, values);
+            }
+            return map;
+        });
+    }
+
+    public static StageGraph.Codec<ColumnarTable> columnar() {
+        return new StageGraph.Codec<>() {
+            @Override
+            public void write(ColumnarTable table, Path path) throws IOException {
+                table.write(path);
+            }
+
+            @Override
+            public ColumnarTable read(Path path) throws IOException {
+                return ColumnarTable.read(path);
+            }
+        };
+    }
+
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,315 @@
+package org.example.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A pipeline as a graph of named stages, every one with its declared inputs, evaluated lazily and checkpointed.
+ * - source stages read the outside world (JIRA, the repository): they always run, and their hash is a hash of their content
+ * - derived stages are functions of their inputs and parameters: their hash is the SHA-256 of the stage name,
+ *   the parameters and the hashes of the inputs, so it is known without computing anything
+ * - a persisted stage writes its value to <dir>/<stage>.bin with its hash in <dir>/<stage>.key as soon as it completes:
+ *   a later run with the same hash loads it instead of running the stage, and none of its inputs is evaluated for it
+ * - a task is a derived stage run for its side effects (csv files): only its hash is recorded
+ * - a stage declares the files it writes (Inputs.output): they are recorded with its hash, and a checkpoint whose
+ *   files are gone does not count, the stage runs again. Settings that change where or how they are written
+ *   (output directory, compression) belong to the parameters of the stage
+ * - a transient stage is never persisted: it runs (once) in every run that needs its value
+ * A run that crashes resumes from the checkpoints of the stages that completed. FORMAT is part of every hash:
+ * bump it when a stage computes something different from the same inputs.
+ * Stages can be evaluated from several threads (see runConcurrently): each one runs at most once, a thread that needs
+ * a stage being evaluated by another one waits for it. Locks are taken along the edges of the graph, so never in a cycle.
+ * Every stage that runs or is loaded is measured in the RunMetrics of the graph: its inputs are evaluated first,
+ * so the time of a stage is its own.
+ */
+public final class StageGraph {
+
+    private static final Logger LOGGER = Logger.getLogger(StageGraph.class.getName());
+    private static final int FORMAT = 2;
+
+    private final Path dir;
+    private final boolean checkpoints;
+    private final RunMetrics metrics;
+    private final Map<String, Stage<?>> stages = new LinkedHashMap<>();
+
+    // dir null: nothing is persisted, every stage runs
+    public StageGraph(Path dir, RunMetrics metrics) {
+        this.dir = dir;
+        this.checkpoints = dir != null;
+        this.metrics = metrics;
+    }
+
+    public interface Compute<T> {
+        T compute(Inputs inputs) throws IOException;
+    }
+
+    public interface Task {
+        void run(Inputs inputs) throws IOException;
+    }
+
+    // persisted form of a stage value
+    public interface Codec<T> {
+        void write(T value, Path path) throws IOException;
+        T read(Path path) throws IOException;
+    }
+
+    // values of the declared inputs of the stage being computed, and the files it writes
+    public static final class Inputs {
+        private final Stage<?> stage;
+
+        private Inputs(Stage<?> stage) {
+            this.stage = stage;
+        }
+
+        public <I> I get(Stage<I> input) throws IOException {
+            if (!stage.inputs.contains(input)) {
+                throw new IllegalStateException(stage.name + " reads " + input.name + " without declaring it as an input");
+            }
+            return input.get();
+        }
+
+        // a file written by the stage: the stage runs again in a later run that does not find it
+        public void output(Path file) {
+            synchronized (stage.outputs) {
+                stage.outputs.add(file.toAbsolutePath().normalize());
+            }
+        }
+
+        public void outputs(Collection<Path> files) {
+            files.forEach(this::output);
+        }
+    }
+
+
+    public <T> Stage<T> source(String name, BiConsumer<T, MessageDigest> contentHash, List<Stage<?>> inputs, Compute<T> compute) {
+        return add(new Stage<>(name, Kind.SOURCE, inputs, List.of(), compute, null, contentHash));
+    }
+
+    public <T> Stage<T> persisted(String name, Codec<T> codec, List<Stage<?>> inputs, List<String> parameters, Compute<T> compute) {
+        return add(new Stage<>(name, Kind.PERSISTED, inputs, parameters, compute, codec, null));
+    }
+
+    public <T> Stage<T> transientStage(String name, List<Stage<?>> inputs, List<String> parameters, Compute<T> compute) {
+        return add(new Stage<>(name, Kind.TRANSIENT, inputs, parameters, compute, null, null));
+    }
+
+    public Stage<Void> task(String name, List<Stage<?>> inputs, List<String> parameters, Task task) {
+        return add(new Stage<>(name, Kind.TASK, inputs, parameters, in -> {
+            task.run(in);
+            return null;
+        }, null, null));
+    }
+
+    // evaluates the stages at the same time, each one with the stages it needs, and returns when all of them completed:
+    // independent work (e.g. JIRA requests and the git walk) overlaps, and is only joined where a later stage reads both.
+    // The first failure cancels the others and is rethrown once every task stopped: no task outlives the call.
+    public void runConcurrently(List<Stage<?>> toRun) throws IOException {
+        //platform threads: the CPU time and allocation of a stage are not measurable on a virtual thread
+        try (ExecutorService scope = Executors.newThreadPerTaskExecutor(Thread.ofPlatform().name("stage-", 0).factory())) {
+            CompletionService<Object> completion = new ExecutorCompletionService<>(scope);
+            List<Future<Object>> tasks = new ArrayList<>();
+            for (Stage<?> stage : toRun) tasks.add(completion.submit(stage::get));
+            try {
+                for (int i = 0; i < tasks.size(); i++) completion.take().get();
+            } catch (ExecutionException e) {
+                tasks.forEach(task -> task.cancel(true));
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException io) throw io;
+                if (cause instanceof RuntimeException runtime) throw runtime;
+                if (cause instanceof Error error) throw error;
+                throw new IOException("Stage failed", cause);
+            } catch (InterruptedException e) {
+                tasks.forEach(task -> task.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while running the stages");
+            }
+        } //close() waits for the cancelled tasks to stop
+    }
+
+    private <T> Stage<T> add(Stage<T> stage) {
+        for (Stage<?> input : stage.inputs) {
+            if (stages.get(input.name) != input) throw new IllegalArgumentException("Unknown input " + input.name + " of " + stage.name);
+        }
+        if (stages.putIfAbsent(stage.name, stage) != null) throw new IllegalArgumentException("Duplicate stage " + stage.name);
+        return stage;
+    }
+
+
+    private enum Kind { SOURCE, PERSISTED, TRANSIENT, TASK }
+
+    public final class Stage<T> {
+        private final String name;
+        private final Kind kind;
+        private final List<Stage<?>> inputs;
+        private final List<String> parameters;
+        private final Compute<T> compute;
+        private final Codec<T> codec;
+        private final BiConsumer<T, MessageDigest> contentHash;
+
+        private final List<Path> outputs = new ArrayList<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private String hash;
+        private T value;
+        private boolean evaluated;
+
+        private Stage(String name, Kind kind, List<Stage<?>> inputs, List<String> parameters, Compute<T> compute,
+                      Codec<T> codec, BiConsumer<T, MessageDigest> contentHash) {
+            this.name = name;
+            this.kind = kind;
+            this.inputs = List.copyOf(inputs);
+            this.parameters = List.copyOf(parameters);
+            this.compute = compute;
+            this.codec = codec;
+            this.contentHash = contentHash;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public T get() throws IOException {
+            lock();
+            try {
+                if (!evaluated) {
+                    value = kind == Kind.SOURCE || kind == Kind.TRANSIENT ? run() : loadOrRun();
+                    evaluated = true;
+                }
+                return value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public String hash() throws IOException {
+            lock();
+            try {
+                if (hash == null) {
+                    MessageDigest digest = newDigest();
+                    update(digest, name + '/' + FORMAT);
+                    if (kind == Kind.SOURCE) {
+                        contentHash.accept(get(), digest);
+                    } else {
+                        for (String parameter : parameters) update(digest, parameter);
+                        for (Stage<?> input : inputs) update(digest, input.name + '=' + input.hash());
+                    }
+                    hash = HexFormat.of().formatHex(digest.digest());
+                }
+                return hash;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // a cancelled task waiting for another stage stops waiting
+        private void lock() throws InterruptedIOException {
+            try {
+                lock.lockInterruptibly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for stage " + name);
+            }
+        }
+
+        private T loadOrRun() throws IOException {
+            if (checkpoints) {
+                Path keyFile = dir.resolve(name + ".key");
+                if (Files.exists(keyFile) && isCurrent(Files.readAllLines(keyFile, StandardCharsets.UTF_8))) {
+                    RunMetrics.Span span = metrics.startStage(name);
+                    try {
+                        T loaded = kind == Kind.TASK ? null : codec.read(dir.resolve(name + ".bin"));
+                        span.end(kind == Kind.TASK ? "skipped" : "loaded");
+                        Printer.println("Stage " + name + ": inputs unchanged, " + (kind == Kind.TASK ? "skipped" : "loaded from checkpoint"));
+                        return loaded;
+                    } catch (IOException | RuntimeException e) {
+                        span.end("unreadable");
+                        LOGGER.log(Level.WARNING, "Unreadable checkpoint of " + name + ", running the stage again", e);
+                    }
+                }
+            }
+            T computed = run();
+            if (checkpoints) save(computed);
+            return computed;
+        }
+
+        // key file: the hash of the stage, then the files it wrote, one per line; all of them must still be there
+        private boolean isCurrent(List<String> key) throws IOException {
+            if (key.isEmpty() || !key.get(0).equals(hash())) return false;
+            for (String output : key.subList(1, key.size())) {
+                if (!Files.exists(Path.of(output))) {
+                    Printer.println("Stage " + name + ": " + output + " is missing, running the stage again");
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private T run() throws IOException {
+            for (Stage<?> input : inputs) input.get();
+            synchronized (outputs) {
+                outputs.clear();
+            }
+            long start = System.nanoTime();
+            RunMetrics.Span span = metrics.startStage(name);
+            boolean completed = false;
+            try {
+                T computed = compute.compute(new Inputs(this));
+                completed = true;
+                return computed;
+            } finally {
+                span.end(completed ? "ran" : "failed");
+                if (completed) {
+                    LOGGER.log(Level.INFO, "Stage {0} completed in {1} ms", new Object[]{name, (System.nanoTime() - start) / 1_000_000});
+                }
+            }
+        }
+
+        private void save(T computed) throws IOException {
+            //payload first, then the key: a key on disk always describes a complete payload
+            Files.createDirectories(dir);
+            if (kind == Kind.PERSISTED) {
+                Path tmp = dir.resolve(name + ".bin.tmp");
+                codec.write(computed, tmp);
+                Files.move(tmp, dir.resolve(name + ".bin"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Path tmpKey = dir.resolve(name + ".key.tmp");
+            List<String> key = new ArrayList<>();
+            key.add(hash());
+            synchronized (outputs) {
+                outputs.forEach(output -> key.add(output.toString()));
+            }
+            Files.write(tmpKey, key, StandardCharsets.UTF_8);
+            Files.move(tmpKey, dir.resolve(name + ".key"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+
+    public static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        update(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    public static void update(MessageDigest digest, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) digest.update((byte) (value >>> shift));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
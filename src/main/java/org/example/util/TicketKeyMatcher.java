@@ -0,0 +1,155 @@
+package org.example.util;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton over a fixed set of JIRA ticket keys (e.g. "OPENJPA-1234").
+ * One pass over a commit message finds every key of the set, without allocating anything for text that does not match.
+ * A key is reported with the same boundaries the ([A-Z]+-\d+) regex had: not preceded by an upper case letter
+ * and not followed by a digit, so "OPENJPA-12" is not found inside "XOPENJPA-12" or "OPENJPA-123".
+ * Keys are indexed in their natural order, and the matcher is immutable, so one instance can be shared by several threads.
+ * Messages can be scanned as a CharSequence or straight from the raw UTF-8 bytes of a commit
+ * (every byte of a multi-byte character is >= 0x80, so it can never be part of a key).
+ */
+public final class TicketKeyMatcher {
+
+    @FunctionalInterface
+    public interface MatchHandler {
+        void onMatch(int keyIndex);
+    }
+
+    // alphabet of the keys: 'A'-'Z' -> 0..25, '0'-'9' -> 26..35, '-' -> 36; anything else sends the automaton back to the root
+    private static final int ALPHABET = 37;
+
+    private final String[] keys;
+    private final int[] keyLengths;
+    private final int[][] transitions;
+    private final int[] output;      // key ending in this state, -1 if none
+    private final int[] outputLink;  // closest state on the failure chain with an output, -1 if none
+
+    public TicketKeyMatcher(Collection<String> ticketKeys) {
+
+        //keys the regex could never have produced (e.g. "LOG4J2-1") are left out, so the links stay the same
+        List<String> accepted = new ArrayList<>(new TreeSet<>(ticketKeys));
+        accepted.removeIf(key -> !key.matches("[A-Z]+-\\d+"));
+        this.keys = accepted.toArray(new String[0]);
+        this.keyLengths = new int[keys.length];
+
+        //trie
+        List<int[]> trie = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+        trie.add(newState());
+        outputs.add(-1);
+        for (int k = 0; k < keys.length; k++) {
+            keyLengths[k] = keys[k].length();
+            int state = 0;
+            for (int i = 0; i < keys[k].length(); i++) {
+                int symbol = symbol(keys[k].charAt(i));
+                if (trie.get(state)[symbol] == -1) {
+                    trie.get(state)[symbol] = trie.size();
+                    trie.add(newState());
+                    outputs.add(-1);
+                }
+                state = trie.get(state)[symbol];
+            }
+            outputs.set(state, k);
+        }
+
+        this.transitions = trie.toArray(new int[0][]);
+        this.output = outputs.stream().mapToInt(Integer::intValue).toArray();
+        this.outputLink = new int[transitions.length];
+        int[] failure = new int[transitions.length];
+
+        //breadth first: failure links, output links, and missing transitions filled in (complete DFA)
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        outputLink[0] = -1;
+        for (int symbol = 0; symbol < ALPHABET; symbol++) {
+            int next = transitions[0][symbol];
+            if (next == -1) {
+                transitions[0][symbol] = 0;
+            } else {
+                failure[next] = 0;
+                outputLink[next] = -1;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                int next = transitions[state][symbol];
+                int fallback = transitions[failure[state]][symbol];
+                if (next == -1) {
+                    transitions[state][symbol] = fallback;
+                } else {
+                    failure[next] = fallback;
+                    outputLink[next] = output[fallback] != -1 ? fallback : outputLink[fallback];
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+
+    public int size() {
+        return keys.length;
+    }
+
+    public String key(int keyIndex) {
+        return keys[keyIndex];
+    }
+
+    public void scan(CharSequence text, MatchHandler handler) {
+        int length = text.length();
+        int state = 0;
+        for (int i = 0; i < length; i++) {
+            int symbol = symbol(text.charAt(i));
+            state = symbol < 0 ? 0 : transitions[state][symbol];
+            if (output[state] != -1 || outputLink[state] != -1) {
+                char next = i + 1 < length ? text.charAt(i + 1) : ' ';
+                if (isDigit(next)) continue;
+                for (int s = output[state] != -1 ? state : outputLink[state]; s != -1; s = outputLink[s]) {
+                    int start = i - keyLengths[output[s]] + 1;
+                    if (start == 0 || !isUpper(text.charAt(start - 1))) handler.onMatch(output[s]);
+                }
+            }
+        }
+    }
+
+    public void scan(byte[] buffer, int from, int to, MatchHandler handler) {
+        int state = 0;
+        for (int i = from; i < to; i++) {
+            int symbol = symbol((char) (buffer[i] & 0xff));
+            state = symbol < 0 ? 0 : transitions[state][symbol];
+            if (output[state] != -1 || outputLink[state] != -1) {
+                char next = i + 1 < to ? (char) (buffer[i + 1] & 0xff) : ' ';
+                if (isDigit(next)) continue;
+                for (int s = output[state] != -1 ? state : outputLink[state]; s != -1; s = outputLink[s]) {
+                    int start = i - keyLengths[output[s]] + 1;
+                    if (start == from || !isUpper((char) (buffer[start - 1] & 0xff))) handler.onMatch(output[s]);
+                }
+            }
+        }
+    }
+
+
+    private static int[] newState() {
+        int[] state = new int[ALPHABET];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    private static int symbol(char c) {
+        if (c >= 'A' && c <= 'Z') return c - 'A';
+        if (c >= '0' && c <= '9') return 26 + (c - '0');
+        if (c == '-') return 36;
+        return -1;
+    }
+
+    private static boolean isUpper(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Comparable key for a version name, shared by JIRA releases and Git tags.
+ * "openjpa-2.0.0", "release_2_0", "2.0.0-incubating" and "2.0" all become numbers="2", qualifier="".
+ * "4.2.0-rc1" becomes numbers="4.2", qualifier="rc1", so a release candidate never passes for the final release.
+ *  - everything before the first number is a prefix and is dropped
+ *  - '.' and '_' separate the numbers, trailing zero components and leading zeros are dropped
+ *  - what follows the number, without separators and neutral words (incubating, final, ga), is the qualifier
+ *  exactNumbers keeps the untrimmed numbers, to prefer "1.0.0" over "1.0" when both exist.
+ */
+public record VersionKey(String numbers, String qualifier, String exactNumbers) {
+
+    private static final Pattern NUMBER = Pattern.compile("(\\d+(?:[._]\\d+)*)");
+    private static final Set<String> NEUTRAL_QUALIFIERS = Set.of("incubating", "final", "ga");
+
+    public static VersionKey parse(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        Matcher matcher = NUMBER.matcher(lower);
+        if (!matcher.find()) {
+            return null; //not a version at all (e.g. "trunk-snapshot")
+        }
+
+        List<String> components = new ArrayList<>();
+        for (String component : matcher.group(1).split("[._]")) {
+            String trimmed = component.replaceFirst("^0+(?=\\d)", "");
+            components.add(trimmed);
+        }
+        String exactNumbers = String.join(".", components);
+        int last = components.size();
+        while (last > 1 && components.get(last - 1).equals("0")) last--;
+        String numbers = String.join(".", components.subList(0, last));
+
+        StringBuilder qualifier = new StringBuilder();
+        for (String word : lower.substring(matcher.end()).split("[^a-z0-9]+")) {
+            if (!word.isEmpty() && !NEUTRAL_QUALIFIERS.contains(word)) qualifier.append(word);
+        }
+        return new VersionKey(numbers, qualifier.toString(), exactNumbers);
+    }
+
+    public boolean isPreRelease() {
+        return !qualifier.isEmpty();
+    }
+
+    // same version, ignoring the qualifier
+    public String family() {
+        return numbers;
+    }
+
+    // lookup key: numbers and qualifier, the untrimmed numbers only break ties
+    public String key() {
+        return qualifier.isEmpty() ? numbers : numbers + "-" + qualifier;
+    }
+}
@@ -0,0 +1,137 @@
+package org.example.controller;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.example.entity.CommitTable;
+import org.example.util.ConfigurationManager;
+import org.example.util.RunContext;
+import org.example.util.RunMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A run that finds the commits of the previous run in the commit cache walks only the new ones: the commits, and
+ * their ordinals, must come out as a run without the cache extracts them.
+ */
+class GitControllerCommitCacheTest {
+
+    private static final long T0 = 1_600_000_000L;
+
+    @TempDir
+    Path temp;
+
+    private Git git;
+
+    // a commit touching its own file, authored and committed at T0 + hours
+    private RevCommit commit(String name, int hours) throws IOException, GitAPIException {
+        Files.writeString(git.getRepository().getWorkTree().toPath().resolve(name + ".txt"), name);
+        git.add().addFilepattern(name + ".txt").call();
+        PersonIdent ident = new PersonIdent("dev", "dev@example.org", Instant.ofEpochSecond(T0 + hours * 3600L), ZoneOffset.UTC);
+        return git.commit().setMessage(name).setAuthor(ident).setCommitter(ident).call();
+    }
+
+    private RevCommit merge(String branch, int hours) throws IOException, GitAPIException {
+        git.merge().include(git.getRepository().resolve(branch))
+                .setFastForward(MergeCommand.FastForwardMode.NO_FF)
+                .setCommit(false)
+                .call();
+        return commit("merge-" + branch, hours);
+    }
+
+    private void branch(String name, String from) throws GitAPIException {
+        git.branchCreate().setName(name).setStartPoint(from).call();
+    }
+
+    private void checkout(String name) throws GitAPIException {
+        git.checkout().setName(name).call();
+    }
+
+    // what extractCommits returns, with the commit cache in cacheDir
+    private List<String> extract(String cacheDir) throws IOException {
+        ConfigurationManager config = ConfigurationManager.getInstance().with(Map.of(
+                "project.name", "CACHE",
+                "git.path", git.getRepository().getDirectory().getPath(),
+                "git.cache.dir", temp.resolve(cacheDir).toString(),
+                "output.dir", temp.resolve("out").toString()));
+        GitController controller = new GitController(new RunContext(config, null, OptionalDouble.empty(), new RunMetrics()));
+        try {
+            CommitTable commits = controller.extractCommits();
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < commits.size(); i++) names.add(commits.name(i));
+            return names;
+        } finally {
+            controller.close();
+        }
+    }
+
+    private void assertIncrementalMatchesFullWalk() throws IOException {
+        List<String> incremental = extract("cache");
+        List<String> full = extract("fresh-" + System.nanoTime());
+        assertEquals(full, incremental);
+    }
+
+
+    @Test
+    void linearNewCommitsAreAppendedInFront() throws IOException, GitAPIException {
+        git = Git.init().setDirectory(temp.resolve("repo").toFile()).setInitialBranch("main").call();
+        try {
+            //a side branch merged before the first run: the cached part of the history is not linear
+            RevCommit base = commit("a", 0);
+            commit("b", 5);
+            branch("side", base.getName());
+            checkout("side");
+            commit("s1", 2);
+            commit("s2", 7);
+            checkout("main");
+            merge("side", 8);
+            extract("cache");
+
+            commit("c", 9);
+            commit("d", 1); //a commit date older than the cached ones does not reorder a linear walk
+            commit("e", 12);
+
+            assertIncrementalMatchesFullWalk();
+        } finally {
+            git.close();
+        }
+    }
+
+    @Test
+    void mergeOfAnOlderBranchIsWalkedAgain() throws IOException, GitAPIException {
+        git = Git.init().setDirectory(temp.resolve("repo").toFile()).setInitialBranch("main").call();
+        try {
+            RevCommit base = commit("a", 0);
+            branch("old", base.getName());
+            commit("b", 4);
+            commit("c", 8);
+            extract("cache");
+
+            //commits of the branch are older than b and c: git log puts them among the cached commits
+            checkout("old");
+            commit("o1", 2);
+            commit("o2", 6);
+            checkout("main");
+            merge("old", 10);
+            commit("d", 11);
+
+            assertIncrementalMatchesFullWalk();
+        } finally {
+            git.close();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.example.controller;
+
+import org.example.entity.JiraIssueRecord;
+import org.example.util.ConfigurationManager;
+import org.example.util.RunContext;
+import org.example.util.RunMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The pages of a search are fetched concurrently: the issues must come out as a sequential loop over the
+ * pages would return them, whatever order the pages complete in and however many attempts a page needs.
+ */
+class JiraControllerFetchTest {
+
+    private static final Pattern START_AT = Pattern.compile("startAt=(\\d+)");
+    private static final int TOTAL = 437;
+    private static final int PAGE_SIZE = 50; //JIRA returns fewer issues than maxResults asks for
+
+    // a JIRA search served from memory: pages answer in random order, some fail before succeeding
+    private static final class StubJira implements JiraController.PageSource {
+        private final Random random;
+        private final Map<Integer, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        private final Map<Integer, Integer> failuresBeforeSuccess = new HashMap<>();
+        private final Set<Integer> brokenHalfway = new HashSet<>();
+
+        StubJira(long seed) {
+            this.random = new Random(seed);
+        }
+
+        @Override
+        public Reader open(String url, boolean revalidate) throws IOException {
+            Matcher matcher = START_AT.matcher(url);
+            assertTrue(matcher.find(), url);
+            int startAt = Integer.parseInt(matcher.group(1));
+            int attempt = attempts.computeIfAbsent(startAt, key -> new AtomicInteger()).getAndIncrement();
+            sleep();
+            if (attempt < failuresBeforeSuccess.getOrDefault(startAt, 0)) {
+                if (brokenHalfway.contains(startAt)) {
+                    //the first issues of the page are delivered, then the connection drops
+                    String page = page(startAt);
+                    return new FailingReader(page.substring(0, page.length() / 2));
+                }
+                throw new IOException("HTTP 503 for page " + startAt);
+            }
+            return new StringReader(page(startAt));
+        }
+
+        private void sleep() {
+            long millis;
+            synchronized (random) {
+                millis = random.nextInt(15);
+            }
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static String page(int startAt) {
+            StringBuilder sb = new StringBuilder("{\"total\":" + TOTAL + ",\"issues\":[");
+            for (int i = startAt; i < Math.min(TOTAL, startAt + PAGE_SIZE); i++) {
+                if (i > startAt) sb.append(',');
+                sb.append("{\"id\":\"").append(10000 + i).append("\",\"key\":\"STUB-").append(TOTAL - i)
+                        .append("\",\"fields\":{\"created\":\"2020-01-01T10:00:00.000+0000\",\"status\":{\"name\":\"Closed\"},")
+                        .append("\"resolution\":{\"name\":\"Fixed\"},\"versions\":[],\"fixVersions\":[{\"name\":\"1.0\"}]}}");
+            }
+            return sb.append("]}").toString();
+        }
+    }
+
+    private static final class FailingReader extends Reader {
+        private final StringReader delivered;
+
+        FailingReader(String delivered) {
+            this.delivered = new StringReader(delivered);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = delivered.read(buffer, offset, length);
+            if (read < 0) throw new IOException("Connection reset");
+            return read;
+        }
+
+        @Override
+        public void close() {
+            delivered.close();
+        }
+    }
+
+    private static JiraController controller(StubJira stub, int retries) {
+        ConfigurationManager config = ConfigurationManager.getInstance().with(Map.of(
+                "project.name", "STUB",
+                "jira.fetch.concurrency", "4",
+                "jira.fetch.retries", Integer.toString(retries),
+                "jira.fetch.backoff.millis", "1"));
+        return new JiraController(new RunContext(config, null, OptionalDouble.empty(), new RunMetrics()), stub);
+    }
+
+    // what the sequential loop returns: the pages one after the other
+    private static List<String> sequentialKeys() {
+        List<String> keys = new ArrayList<>();
+        for (int startAt = 0; startAt < TOTAL; startAt += PAGE_SIZE) {
+            JiraResponseParser.parseSearchPage(new StringReader(StubJira.page(startAt)), issue -> keys.add(issue.key()));
+        }
+        return keys;
+    }
+
+    private static List<String> keys(List<JiraIssueRecord> issues) {
+        return issues.stream().map(JiraIssueRecord::key).toList();
+    }
+
+
+    @Test
+    void concurrentFetchKeepsTheSequentialOrder() throws IOException {
+        for (long seed = 0; seed < 5; seed++) {
+            StubJira stub = new StubJira(seed);
+            List<JiraIssueRecord> issues = controller(stub, 3).fetchIssues("project=STUB", "key", 100, false);
+            assertEquals(sequentialKeys(), keys(issues), "seed " + seed);
+        }
+    }
+
+    @Test
+    void retriedPagesAreNotDuplicated() throws IOException {
+        StubJira stub = new StubJira(42);
+        stub.failuresBeforeSuccess.put(0, 1);
+        stub.failuresBeforeSuccess.put(150, 2);
+        stub.failuresBeforeSuccess.put(300, 3);
+        stub.failuresBeforeSuccess.put(200, 2);
+        stub.brokenHalfway.add(200);
+        stub.failuresBeforeSuccess.put(400, 1);
+        stub.brokenHalfway.add(400);
+
+        List<JiraIssueRecord> issues = controller(stub, 3).fetchIssues("project=STUB", "key", 100, false);
+
+        assertEquals(sequentialKeys(), keys(issues));
+        assertEquals(4, stub.attempts.get(300).get());
+        assertEquals(3, stub.attempts.get(200).get());
+    }
+
+    @Test
+    void pageFailingAfterItsRetriesFailsTheFetch() {
+        StubJira stub = new StubJira(7);
+        stub.failuresBeforeSuccess.put(250, Integer.MAX_VALUE);
+        stub.brokenHalfway.add(250);
+
+        assertThrows(IOException.class, () -> controller(stub, 2).fetchIssues("project=STUB", "key", 100, false));
+        assertEquals(3, stub.attempts.get(250).get());
+    }
+}
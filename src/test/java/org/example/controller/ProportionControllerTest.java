@@ -0,0 +1,149 @@
+package org.example.controller;
+
+import org.example.entity.JiraTicket;
+import org.example.entity.Release;
+import org.example.entity.ReleaseTimeline;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The p values of every proportion variant, computed by feeding an OrderStatistics in fix order, against a naive
+ * recomputation that sorts the ratios of the tickets visible at each release again.
+ */
+class ProportionControllerTest {
+
+    private static final double DEFAULT_P = 0.5;
+
+    private record Sample(ReleaseTimeline timeline, List<JiraTicket> tickets) {}
+
+    // releases a few days apart (some on the same day), tickets with and without a known IV or a fix version
+    private static Sample sample(Random random) {
+        List<Release> releases = new ArrayList<>();
+        Instant date = Instant.parse("2015-01-01T00:00:00Z");
+        int size = 2 + random.nextInt(25);
+        for (int i = 0; i < size; i++) {
+            date = date.plusSeconds(86_400L * random.nextInt(40));
+            releases.add(new Release(Integer.toString(i), "1." + i, date));
+        }
+        ReleaseTimeline timeline = ReleaseTimeline.of(releases);
+
+        List<JiraTicket> tickets = new ArrayList<>();
+        int count = random.nextInt(80);
+        for (int i = 0; i < count; i++) {
+            Release ov = releases.get(random.nextInt(size));
+            Release iv = random.nextInt(3) == 0 ? null : releases.get(random.nextInt(size));
+            List<Release> fixVersions = random.nextInt(10) == 0 ? List.of() : List.of(releases.get(random.nextInt(size)));
+            tickets.add(new JiraTicket(Integer.toString(i), "T-" + i, "Fixed", "", timeline, ov, iv, fixVersions, List.of()));
+        }
+        return new Sample(timeline, tickets);
+    }
+
+    // (FV - IV) / (FV - OV) in seconds, NaN for a ticket that tells nothing about p
+    private static double naiveRatio(JiraTicket ticket, ReleaseTimeline timeline) {
+        if (ticket.injectOrdinal() < 0 || ticket.openingOrdinal() < 0 || !ticket.hasFixVersion()) return Double.NaN;
+        long fv = timeline.dateOf(ticket.fixOrdinal()).getEpochSecond();
+        long ov = timeline.dateOf(ticket.openingOrdinal()).getEpochSecond();
+        long iv = timeline.dateOf(ticket.injectOrdinal()).getEpochSecond();
+        if (fv - ov <= 0 || fv - iv < 0) return Double.NaN;
+        return (double) (fv - iv) / (fv - ov);
+    }
+
+    private static double naiveAggregate(List<Double> ratios, boolean mean) {
+        if (ratios.isEmpty()) return DEFAULT_P;
+        if (mean) return ratios.stream().mapToDouble(Double::doubleValue).sum() / ratios.size();
+        List<Double> sorted = new ArrayList<>(ratios);
+        Collections.sort(sorted);
+        int middle = sorted.size() / 2;
+        return sorted.size() % 2 == 1 ? sorted.get(middle) : (sorted.get(middle - 1) + sorted.get(middle)) / 2.0;
+    }
+
+    // p of every release from the tickets fixed before it, the last window of them in fix order; the window is a
+    // percentage of the tickets fixed before the release (visibleWindow) or of all of them
+    private static double[] naiveHistoryP(Sample sample, boolean movingWindow, double windowPercent, boolean visibleWindow,
+                                          boolean mean) {
+        List<JiraTicket> known = new ArrayList<>();
+        for (JiraTicket ticket : sample.tickets()) {
+            if (!Double.isNaN(naiveRatio(ticket, sample.timeline()))) known.add(ticket);
+        }
+        known.sort(Comparator.comparingInt(JiraTicket::fixOrdinal));
+        double[] pByRelease = new double[sample.timeline().size()];
+        for (int release = 0; release < pByRelease.length; release++) {
+            List<Double> visible = new ArrayList<>();
+            for (JiraTicket ticket : known) {
+                if (ticket.fixOrdinal() < release) visible.add(naiveRatio(ticket, sample.timeline()));
+            }
+            int history = visibleWindow ? visible.size() : known.size();
+            int window = movingWindow ? Math.max(1, (int) Math.round(history * windowPercent / 100.0)) : Integer.MAX_VALUE;
+            pByRelease[release] = naiveAggregate(visible.subList(Math.max(0, visible.size() - window), visible.size()), mean);
+        }
+        return pByRelease;
+    }
+
+    private static double naiveGlobalP(Sample sample, boolean mean) {
+        List<Double> ratios = new ArrayList<>();
+        for (JiraTicket ticket : sample.tickets()) {
+            double ratio = naiveRatio(ticket, sample.timeline());
+            if (!Double.isNaN(ratio)) ratios.add(ratio);
+        }
+        return naiveAggregate(ratios, mean);
+    }
+
+
+    @Test
+    void globalMatchesTheNaiveAggregate() {
+        for (long seed = 0; seed < 50; seed++) {
+            Sample sample = sample(new Random(seed));
+            for (boolean mean : new boolean[]{false, true}) {
+                ProportionController proportion = new ProportionController(ProportionController.Method.GLOBAL, 1, mean);
+                double expected = naiveGlobalP(sample, mean);
+                assertEquals(expected, proportion.computeP(sample.tickets()), 1e-9, "seed " + seed);
+                for (double p : proportion.computeReleaseP(sample.tickets(), sample.timeline())) {
+                    assertEquals(expected, p, 1e-9, "seed " + seed);
+                }
+                //walk-forward: global grows release by release like increment
+                assertArrayEquals(naiveHistoryP(sample, false, 1, true, mean),
+                        proportion.computeVisibleP(sample.tickets(), sample.timeline()), 1e-9, "seed " + seed);
+            }
+        }
+    }
+
+    @Test
+    void incrementMatchesTheNaiveHistory() {
+        for (long seed = 0; seed < 50; seed++) {
+            Sample sample = sample(new Random(seed));
+            for (boolean mean : new boolean[]{false, true}) {
+                ProportionController proportion = new ProportionController(ProportionController.Method.INCREMENT, 1, mean);
+                double[] expected = naiveHistoryP(sample, false, 1, true, mean);
+                assertArrayEquals(expected, proportion.computeReleaseP(sample.tickets(), sample.timeline()), 1e-9, "seed " + seed);
+                assertArrayEquals(expected, proportion.computeVisibleP(sample.tickets(), sample.timeline()), 1e-9, "seed " + seed);
+            }
+        }
+    }
+
+    @Test
+    void movingWindowMatchesTheNaiveHistory() {
+        for (long seed = 0; seed < 50; seed++) {
+            Random random = new Random(seed);
+            Sample sample = sample(random);
+            double windowPercent = 1 + random.nextInt(60);
+            for (boolean mean : new boolean[]{false, true}) {
+                ProportionController proportion = new ProportionController(ProportionController.Method.MOVING_WINDOW, windowPercent, mean);
+                assertArrayEquals(naiveHistoryP(sample, true, windowPercent, false, mean),
+                        proportion.computeReleaseP(sample.tickets(), sample.timeline()), 1e-9,
+                        "seed " + seed + ", window " + windowPercent + "%");
+                //walk-forward: the window only counts the tickets fixed before each release
+                assertArrayEquals(naiveHistoryP(sample, true, windowPercent, true, mean),
+                        proportion.computeVisibleP(sample.tickets(), sample.timeline()), 1e-9,
+                        "seed " + seed + ", window " + windowPercent + "%");
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A table built in memory, streamed to a file, or read back from either must hold the same values.
+ */
+class ColumnarTableTest {
+
+    @TempDir
+    Path temp;
+
+    private static final int ROWS = 5000;
+
+    // constant, byte, short and int wide columns, plus strings
+    private static void fill(ColumnarTable.Builder builder, long seed) {
+        builder.stringColumn("Name").intColumn("Constant").intColumn("Small").intColumn("Medium").intColumn("Large");
+        Random random = new Random(seed);
+        for (int row = 0; row < ROWS; row++) {
+            builder.set(0, "m" + random.nextInt(300))
+                    .set(1, 7)
+                    .set(2, -3 + random.nextInt(200))
+                    .set(3, random.nextInt(60_000))
+                    .set(4, random.nextInt())
+                    .endRow();
+        }
+    }
+
+    private static void assertSameValues(ColumnarTable expected, ColumnarTable actual) {
+        assertEquals(expected.rowCount(), actual.rowCount());
+        assertEquals(expected.columnCount(), actual.columnCount());
+        for (int c = 0; c < expected.columnCount(); c++) {
+            assertEquals(expected.columnName(c), actual.columnName(c));
+            for (int row = 0; row < expected.rowCount(); row++) {
+                assertEquals(expected.getString(c, row), actual.getString(c, row), expected.columnName(c) + " row " + row);
+            }
+        }
+    }
+
+
+    @Test
+    void streamedAndReadTablesMatchTheBuiltOne() throws IOException {
+        ColumnarTable.Builder memory = ColumnarTable.builder("t");
+        fill(memory, 3);
+        ColumnarTable built = memory.build();
+
+        Path file = temp.resolve("t.col");
+        ColumnarTable streamed;
+        try (ColumnarTable.Builder builder = ColumnarTable.builder("t", file)) {
+            fill(builder, 3);
+            streamed = builder.build();
+        }
+        assertEquals(file, streamed.source().orElseThrow());
+        assertSameValues(built, streamed);
+
+        //the same bytes whichever way the table was filled
+        Path copy = temp.resolve("copy.col");
+        built.write(copy);
+        assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(copy));
+        assertSameValues(built, ColumnarTable.read(copy));
+
+        //the temporary column files are gone
+        try (var files = Files.list(temp)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void endRowChecksEveryColumn() {
+        ColumnarTable.Builder builder = ColumnarTable.builder("t").intColumn("A").intColumn("B");
+        builder.set(0, 1);
+        //as many values as columns, but B is missing
+        assertThrows(IllegalStateException.class, () -> builder.set(0, 2));
+        assertThrows(IllegalStateException.class, builder::endRow);
+        builder.set(1, 2).endRow();
+        assertEquals(1, builder.rowCount());
+        builder.set(1, 3);
+        assertThrows(IllegalStateException.class, builder::build);
+    }
+
+    @Test
+    void emptyTableRoundTrips() throws IOException {
+        Path file = temp.resolve("empty.col");
+        try (ColumnarTable.Builder builder = ColumnarTable.builder("empty", file).stringColumn("S").intColumn("I")) {
+            ColumnarTable table = builder.build();
+            assertEquals(0, table.rowCount());
+            assertEquals(2, ColumnarTable.read(file).columnCount());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The Fenwick tree multiset against a sorted list rebuilt after every operation.
+ */
+class OrderStatisticsTest {
+
+    // values with duplicates, like the ratios of tickets with the same releases
+    private static double[] universe(Random random, int size) {
+        double[] universe = new double[size];
+        for (int i = 0; i < size; i++) universe[i] = random.nextInt(size / 2 + 1) / 4.0;
+        return universe;
+    }
+
+    private static double naiveMedian(List<Double> sorted) {
+        int middle = sorted.size() / 2;
+        return sorted.size() % 2 == 1 ? sorted.get(middle) : (sorted.get(middle - 1) + sorted.get(middle)) / 2.0;
+    }
+
+    private static double naiveMean(List<Double> values) {
+        return values.stream().mapToDouble(Double::doubleValue).sum() / values.size();
+    }
+
+    private static void assertSameAs(List<Double> naive, OrderStatistics statistics) {
+        List<Double> sorted = new ArrayList<>(naive);
+        Collections.sort(sorted);
+        assertEquals(sorted.size(), statistics.size());
+        for (int k = 0; k < sorted.size(); k++) {
+            assertEquals(sorted.get(k), statistics.kth(k), "k=" + k);
+        }
+        if (!sorted.isEmpty()) {
+            assertEquals(naiveMedian(sorted), statistics.median());
+            assertEquals(naiveMean(sorted), statistics.mean(), 1e-9);
+        }
+    }
+
+
+    @Test
+    void randomAddsAndRemovesMatchASortedList() {
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            double[] universe = universe(random, 1 + random.nextInt(60));
+            OrderStatistics statistics = new OrderStatistics(universe);
+            List<Double> naive = new ArrayList<>();
+
+            for (int step = 0; step < 300; step++) {
+                if (naive.isEmpty() || random.nextInt(3) > 0) {
+                    double value = universe[random.nextInt(universe.length)];
+                    statistics.add(value);
+                    naive.add(value);
+                } else {
+                    double value = naive.remove(random.nextInt(naive.size()));
+                    statistics.remove(value);
+                }
+                assertSameAs(naive, statistics);
+            }
+        }
+    }
+
+    @Test
+    void slidingWindowMatchesASortedList() {
+        Random random = new Random(11);
+        double[] values = universe(random, 200);
+        OrderStatistics statistics = new OrderStatistics(values);
+        int window = 17;
+        for (int i = 0; i < values.length; i++) {
+            statistics.add(values[i]);
+            if (statistics.size() > window) statistics.remove(values[i - window]);
+            List<Double> naive = new ArrayList<>();
+            for (int j = Math.max(0, i - window + 1); j <= i; j++) naive.add(values[j]);
+            assertSameAs(naive, statistics);
+        }
+    }
+
+    @Test
+    void rejectsValuesItDoesNotHold() {
+        OrderStatistics statistics = new OrderStatistics(new double[]{0.5, 1.0, 1.0});
+        assertThrows(NoSuchElementException.class, statistics::median);
+        assertThrows(IllegalArgumentException.class, () -> statistics.add(0.75));
+        statistics.add(1.0);
+        assertThrows(NoSuchElementException.class, () -> statistics.remove(0.5));
+        assertThrows(IndexOutOfBoundsException.class, () -> statistics.kth(1));
+    }
+}